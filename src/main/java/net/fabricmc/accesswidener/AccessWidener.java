@@ -20,19 +20,89 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.Remapper;
 
-public final class AccessWidener implements AccessWidenerVisitor {
+public final class AccessWidener implements AccessWidenerBatchVisitor {
 	String namespace;
 	// Contains the actual transforms. Class names are as class-file internal binary names (forward slash is used
 	// instead of period as the package separator).
-	final Map<String, Access> classAccess = new HashMap<>();
-	final Map<EntryTriple, Access> methodAccess = new HashMap<>();
-	final Map<EntryTriple, Access> fieldAccess = new HashMap<>();
+	// Replaced by concurrent maps by readLazily, see LazyRules#isLoaded.
+	Map<String, Access> classAccess;
+	Map<EntryTriple, Access> methodAccess;
+	Map<EntryTriple, Access> fieldAccess;
 	// Contains the class-names that are affected by loaded wideners.
 	// Names are period-separated binary names (i.e. a.b.C).
-	final Set<String> classes = new LinkedHashSet<>();
+	final Set<String> classes;
+	// Maintained as rules change, see getFingerprint and getClassFingerprints
+	final Map<String, Long> classFingerprints;
+	long fingerprint;
+	// Number of parents the rules are layered on, see AccessWidener(AccessWidener)
+	final int depth;
+	// Entries of lazily read files that haven't been read yet, null unless readLazily was used
+	LazyRules lazyRules;
+
+	public AccessWidener() {
+		this.classAccess = new HashMap<>();
+		this.methodAccess = new HashMap<>();
+		this.fieldAccess = new HashMap<>();
+		this.classes = new LinkedHashSet<>();
+		this.classFingerprints = new HashMap<>();
+		this.depth = 0;
+	}
+
+	/**
+	 * Creates an access widener that starts out with all rules of the parent, without copying them. Rules visited
+	 * afterwards are stored separately and don't affect the parent, so any number of access wideners can be derived
+	 * from the same parent at the cost of their own rules only.
+	 *
+	 * <p>The parent must not be changed while access wideners derived from it are in use. Lookups go through every
+	 * parent, so deep chains of derived access wideners should be avoided.
+	 */
+	public AccessWidener(AccessWidener parent) {
+		parent.loadAll();
+		this.namespace = parent.namespace;
+		this.classAccess = new LayeredMap<>(parent.classAccess);
+		this.methodAccess = new LayeredMap<>(parent.methodAccess);
+		this.fieldAccess = new LayeredMap<>(parent.fieldAccess);
+		this.classes = new LayeredSet<>(parent.classes);
+		this.classFingerprints = new LayeredMap<>(parent.classFingerprints);
+		this.fingerprint = parent.fingerprint;
+		this.depth = parent.depth + 1;
+	}
+
+	/**
+	 * Creates an access widener backed by the given collections. Changing it fails if they are unmodifiable.
+	 */
+	AccessWidener(String namespace, Map<String, Access> classAccess, Map<EntryTriple, Access> methodAccess, Map<EntryTriple, Access> fieldAccess,
+			Set<String> classes, Map<String, Long> classFingerprints, long fingerprint) {
+		this.namespace = namespace;
+		this.classAccess = classAccess;
+		this.methodAccess = methodAccess;
+		this.fieldAccess = fieldAccess;
+		this.classes = classes;
+		this.classFingerprints = classFingerprints;
+		this.fingerprint = fingerprint;
+		this.depth = 0;
+	}
+
+	/**
+	 * Creates a copy of all rules, which isn't affected by later changes to this access widener.
+	 */
+	AccessWidener copy() {
+		loadAll();
+		AccessWidener copy = new AccessWidener();
+		copy.namespace = namespace;
+		copy.classAccess.putAll(classAccess);
+		copy.methodAccess.putAll(methodAccess);
+		copy.fieldAccess.putAll(fieldAccess);
+		copy.classes.addAll(classes);
+		copy.classFingerprints.putAll(classFingerprints);
+		copy.fingerprint = fingerprint;
+		return copy;
+	}
 
 	@Override
 	public void visitHeader(String namespace) {
@@ -43,25 +113,66 @@ public final class AccessWidener implements AccessWidenerVisitor {
 		this.namespace = namespace;
 	}
 
+	/**
+	 * Reads an access widener file, but only reads the entries for a class once the rules for that class are
+	 * looked up, usually when {@link AccessWidenerClassVisitor} transforms it. The targets are known right away.
+	 *
+	 * <p>Errors in entries that are read later are only reported then, when looking up the rules of the class.
+	 * Looking up rules is thread-safe, but all files must be read before.
+	 *
+	 * @param currentNamespace the namespace the file must be in, or null to accept any namespace
+	 */
+	public void readLazily(byte[] content, String currentNamespace) {
+		if (lazyRules == null) {
+			// Rules of classes can then be looked up while lazily read entries of other classes are loaded
+			classAccess = concurrent(classAccess);
+			methodAccess = concurrent(methodAccess);
+			fieldAccess = concurrent(fieldAccess);
+			lazyRules = new LazyRules(this);
+		}
+
+		synchronized (lazyRules) {
+			lazyRules.scan(content, currentNamespace);
+		}
+	}
+
 	@Override
 	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
-		classAccess.put(name, applyAccess(access, classAccess.getOrDefault(name, ClassAccess.DEFAULT), null));
+		putClassAccess(name, applyAccess(access, classAccess.getOrDefault(name, ClassAccess.DEFAULT), null));
 		addTargets(name);
 	}
 
 	@Override
 	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
-		addOrMerge(methodAccess, new EntryTriple(owner, name, descriptor), access, MethodAccess.DEFAULT);
+		addOrMerge(RuleFingerprint.METHOD, methodAccess, new EntryTriple(owner, name, descriptor), access, MethodAccess.DEFAULT);
 		addTargets(owner);
 	}
 
 	@Override
 	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
-		addOrMerge(fieldAccess, new EntryTriple(owner, name, descriptor), access, FieldAccess.DEFAULT);
+		addOrMerge(RuleFingerprint.FIELD, fieldAccess, new EntryTriple(owner, name, descriptor), access, FieldAccess.DEFAULT);
 		addTargets(owner);
 	}
 
-	private void addTargets(String clazz) {
+	@Override
+	public void visitBatch(EntryBatch batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			switch (batch.getKind(i)) {
+			case CLASS:
+				visitClass(batch.getOwner(i), batch.getAccess(i), batch.isTransitive(i));
+				break;
+			case METHOD:
+				visitMethod(batch.getOwner(i), batch.getName(i), batch.getDescriptor(i), batch.getAccess(i), batch.isTransitive(i));
+				break;
+			case FIELD:
+				visitField(batch.getOwner(i), batch.getName(i), batch.getDescriptor(i), batch.getAccess(i), batch.isTransitive(i));
+				break;
+			}
+		}
+	}
+
+	void addTargets(String clazz) {
+		classFingerprints.putIfAbsent(clazz, 0L);
 		clazz = clazz.replace('/', '.');
 		classes.add(clazz);
 
@@ -69,24 +180,83 @@ public final class AccessWidener implements AccessWidenerVisitor {
 		while (clazz.contains("$")) {
 			clazz = clazz.substring(0, clazz.lastIndexOf("$"));
 			classes.add(clazz);
+			classFingerprints.putIfAbsent(clazz.replace('.', '/'), 0L);
 		}
 	}
 
-	void addOrMerge(Map<EntryTriple, Access> map, EntryTriple entry, AccessWidenerReader.AccessType access, Access defaultAccess) {
+	/**
+	 * Removes a class from the targets. Only valid once the class has no rules left, neither its own nor those of
+	 * its nested classes.
+	 */
+	void removeTarget(String clazz) {
+		classes.remove(clazz.replace('/', '.'));
+		classFingerprints.remove(clazz);
+	}
+
+	void addOrMerge(char kind, Map<EntryTriple, Access> map, EntryTriple entry, AccessWidenerReader.AccessType access, Access defaultAccess) {
 		if (entry == null || access == null) {
 			throw new RuntimeException("Input entry or access is null");
 		}
 
-		map.put(entry, applyAccess(access, map.getOrDefault(entry, defaultAccess), entry));
+		putMemberAccess(kind, map, entry, applyAccess(access, map.getOrDefault(entry, defaultAccess), entry), defaultAccess);
+	}
+
+	/**
+	 * Sets the access of a class, replacing instead of merging the previous access. Setting the default access
+	 * removes the class.
+	 */
+	void putClassAccess(String name, Access access) {
+		Access previous = access == ClassAccess.DEFAULT ? classAccess.remove(name) : classAccess.put(name, access);
+
+		if (previous == access || (previous == null && access == ClassAccess.DEFAULT)) {
+			return;
+		}
+
+		long delta = RuleFingerprint.hash(RuleFingerprint.CLASS, name, "", "", access)
+				- RuleFingerprint.hash(RuleFingerprint.CLASS, name, "", "", previous != null ? previous : ClassAccess.DEFAULT);
+		fingerprint += delta;
+		classFingerprints.merge(name, delta, Long::sum);
+
+		// The access of nested classes is also applied to the inner class attributes of all outer classes
+		while (name.contains("$")) {
+			name = name.substring(0, name.lastIndexOf("$"));
+			classFingerprints.merge(name, delta, Long::sum);
+		}
+	}
+
+	void putMemberAccess(char kind, Map<EntryTriple, Access> map, EntryTriple member, Access access, Access defaultAccess) {
+		Access previous = access == defaultAccess ? map.remove(member) : map.put(member, access);
+
+		if (previous == access || (previous == null && access == defaultAccess)) {
+			return;
+		}
+
+		long delta = RuleFingerprint.hash(kind, member.getOwner(), member.getName(), member.getDesc(), access)
+				- RuleFingerprint.hash(kind, member.getOwner(), member.getName(), member.getDesc(), previous != null ? previous : defaultAccess);
+		fingerprint += delta;
+		classFingerprints.merge(member.getOwner(), delta, Long::sum);
 	}
 
 	Access applyAccess(AccessWidenerReader.AccessType input, Access access, EntryTriple entryTriple) {
+		if (entryTriple != null && input != AccessWidenerReader.AccessType.MUTABLE) {
+			// Members that are made accessible or extendable make their class accessible or extendable as well
+			String owner = entryTriple.getOwner();
+			putClassAccess(owner, applyAccess(input, classAccess.getOrDefault(owner, ClassAccess.DEFAULT)));
+		}
+
+		return applyAccess(input, access);
+	}
+
+	/**
+	 * Returns the access with the given access type applied on top of it.
+	 *
+	 * @throws UnsupportedOperationException if the access type doesn't apply to the kind of the access
+	 */
+	static Access applyAccess(AccessWidenerReader.AccessType input, Access access) {
 		switch (input) {
 		case ACCESSIBLE:
-			makeClassAccessible(entryTriple);
 			return access.makeAccessible();
 		case EXTENDABLE:
-			makeClassExtendable(entryTriple);
 			return access.makeExtendable();
 		case MUTABLE:
 			return access.makeMutable();
@@ -95,32 +265,195 @@ public final class AccessWidener implements AccessWidenerVisitor {
 		}
 	}
 
-	private void makeClassAccessible(EntryTriple entryTriple) {
-		if (entryTriple == null) return;
-		classAccess.put(entryTriple.getOwner(), applyAccess(AccessWidenerReader.AccessType.ACCESSIBLE, classAccess.getOrDefault(entryTriple.getOwner(), ClassAccess.DEFAULT), null));
-	}
-
-	private void makeClassExtendable(EntryTriple entryTriple) {
-		if (entryTriple == null) return;
-		classAccess.put(entryTriple.getOwner(), applyAccess(AccessWidenerReader.AccessType.EXTENDABLE, classAccess.getOrDefault(entryTriple.getOwner(), ClassAccess.DEFAULT), null));
-	}
-
 	Access getClassAccess(String className) {
+		load(className);
 		return classAccess.getOrDefault(className, ClassAccess.DEFAULT);
 	}
 
 	Access getFieldAccess(EntryTriple entryTriple) {
+		load(entryTriple.getOwner());
 		return fieldAccess.getOrDefault(entryTriple, FieldAccess.DEFAULT);
 	}
 
 	Access getMethodAccess(EntryTriple entryTriple) {
+		load(entryTriple.getOwner());
 		return methodAccess.getOrDefault(entryTriple, MethodAccess.DEFAULT);
 	}
 
+	/**
+	 * Reads the entries of a class that were left for later by {@link #readLazily}. Only takes the lock if there
+	 * are any, so looking up the rules of classes that were already loaded doesn't contend with other threads.
+	 */
+	private void load(String owner) {
+		LazyRules lazyRules = this.lazyRules;
+
+		if (lazyRules != null && !lazyRules.isLoaded(owner)) {
+			synchronized (lazyRules) {
+				lazyRules.load(owner);
+			}
+		}
+	}
+
+	/**
+	 * Reads all entries that were left for later by {@link #readLazily}.
+	 */
+	void loadAll() {
+		LazyRules lazyRules = this.lazyRules;
+
+		if (lazyRules != null) {
+			synchronized (lazyRules) {
+				lazyRules.loadAll();
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of this access widener with all names remapped to another namespace.
+	 *
+	 * <p>The merged access of every entry is kept as is, so the source files don't need to be read again. Names
+	 * and entries that are the same in both namespaces are shared with this access widener.
+	 *
+	 * @param remapper        Will be used to remap the names of the classes and members.
+	 * @param targetNamespace The namespace of the remapped access widener.
+	 */
+	public AccessWidener remap(Remapper remapper, String targetNamespace) {
+		loadAll();
+		AccessWidener remapped = new AccessWidener();
+		remapped.namespace = targetNamespace;
+		// Owners are shared by many members, so each of them is only remapped once
+		Map<String, String> remappedClasses = new HashMap<>();
+
+		for (Map.Entry<String, Access> entry : classAccess.entrySet()) {
+			String remappedClass = mapType(remapper, remappedClasses, entry.getKey());
+			remapped.putClassAccess(remappedClass, remapped.getClassAccess(remappedClass).merge(entry.getValue()));
+		}
+
+		for (Map.Entry<EntryTriple, Access> entry : methodAccess.entrySet()) {
+			EntryTriple method = entry.getKey();
+			EntryTriple remappedMethod = reuse(method,
+					mapType(remapper, remappedClasses, method.getOwner()),
+					remapper.mapMethodName(method.getOwner(), method.getName(), method.getDesc()),
+					remapper.mapMethodDesc(method.getDesc())
+			);
+			remapped.putMemberAccess(RuleFingerprint.METHOD, remapped.methodAccess, remappedMethod,
+					remapped.getMethodAccess(remappedMethod).merge(entry.getValue()), MethodAccess.DEFAULT);
+		}
+
+		for (Map.Entry<EntryTriple, Access> entry : fieldAccess.entrySet()) {
+			EntryTriple field = entry.getKey();
+			EntryTriple remappedField = reuse(field,
+					mapType(remapper, remappedClasses, field.getOwner()),
+					remapper.mapFieldName(field.getOwner(), field.getName(), field.getDesc()),
+					remapper.mapDesc(field.getDesc())
+			);
+			remapped.putMemberAccess(RuleFingerprint.FIELD, remapped.fieldAccess, remappedField,
+					remapped.getFieldAccess(remappedField).merge(entry.getValue()), FieldAccess.DEFAULT);
+		}
+
+		for (String target : classes) {
+			remapped.addTargets(mapType(remapper, remappedClasses, target.replace('.', '/')));
+		}
+
+		return remapped;
+	}
+
+	private static <K> Map<K, Access> concurrent(Map<K, Access> map) {
+		// Derived access wideners keep their layered maps, their lookups always take the lock
+		return map instanceof HashMap ? new ConcurrentHashMap<>(map) : map;
+	}
+
+	private static String mapType(Remapper remapper, Map<String, String> remappedClasses, String name) {
+		String remapped = remappedClasses.get(name);
+
+		if (remapped == null) {
+			remapped = remapper.mapType(name);
+
+			if (remapped.equals(name)) {
+				remapped = name;
+			}
+
+			remappedClasses.put(name, remapped);
+		}
+
+		return remapped;
+	}
+
+	private static EntryTriple reuse(EntryTriple entry, String owner, String name, String desc) {
+		if (entry.getOwner().equals(owner) && entry.getName().equals(name) && entry.getDesc().equals(desc)) {
+			return entry;
+		}
+
+		return new EntryTriple(owner, name, desc);
+	}
+
 	public Set<String> getTargets() {
 		return classes;
 	}
 
+	/**
+	 * Returns whether a class is in {@link #getTargets()}, without converting its name or reading any entries of
+	 * {@linkplain #readLazily lazily read} files.
+	 *
+	 * @param className the class-file internal binary name of the class
+	 */
+	public boolean isTarget(String className) {
+		// Every target has a fingerprint, keyed by its internal name
+		return classFingerprints.containsKey(className);
+	}
+
+	/**
+	 * Returns a fingerprint of all rules of this access widener. Like the {@linkplain #getClassFingerprints() class
+	 * fingerprints}, it is stable across runs and doesn't depend on the order of the rules.
+	 *
+	 * <p>The fingerprint is updated whenever a rule changes, so this method doesn't need to look at the rules, unless
+	 * entries of {@linkplain #readLazily lazily read} files haven't been read yet.
+	 */
+	public long getFingerprint() {
+		loadAll();
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the fingerprint of the rules of a class, as in {@link #getClassFingerprints()}, with the same gaps.
+	 * Only reads the entries of the class and its nested classes from {@linkplain #readLazily lazily read} files.
+	 *
+	 * @param className the class-file internal binary name of the class
+	 * @return the fingerprint, or 0 if the class isn't targeted
+	 */
+	public long getClassFingerprint(String className) {
+		LazyRules lazyRules = this.lazyRules;
+
+		if (lazyRules != null) {
+			synchronized (lazyRules) {
+				// Nested classes contribute to the fingerprint as well
+				lazyRules.loadNested(className);
+				return classFingerprints.getOrDefault(className, 0L);
+			}
+		}
+
+		return classFingerprints.getOrDefault(className, 0L);
+	}
+
+	/**
+	 * Returns a fingerprint of the effective rules of every targeted class.
+	 *
+	 * <p>The fingerprint of a class covers the rules of the class itself, of its fields and methods and of its own
+	 * nested classes. It doesn't cover the rules of nested classes of other classes, although
+	 * {@link AccessWidenerClassVisitor} applies them to the inner class attributes of every class referring to them,
+	 * so the transformed class can change while its fingerprint stays the same. Class fingerprints therefore can't
+	 * safely key caches of transformed classes, use {@link #getFingerprint()} for those.
+	 *
+	 * <p>Fingerprints are stable across runs and don't depend on the order of the rules, so they tell which classes
+	 * had their own rules changed, for example to report or retransform them.
+	 *
+	 * @return a copy of the fingerprints, keyed by the class-file internal binary name of each class in
+	 * {@link #getTargets()}
+	 */
+	public Map<String, Long> getClassFingerprints() {
+		loadAll();
+		return new HashMap<>(classFingerprints);
+	}
+
 	public String getNamespace() {
 		return namespace;
 	}
@@ -166,6 +499,11 @@ public final class AccessWidener implements AccessWidenerVisitor {
 		Access makeExtendable();
 
 		Access makeMutable();
+
+		/**
+		 * Returns the access that grants everything granted by this and the other access.
+		 */
+		Access merge(Access other);
 	}
 
 	enum ClassAccess implements Access {
@@ -203,6 +541,21 @@ public final class AccessWidener implements AccessWidenerVisitor {
 			throw new UnsupportedOperationException("Classes cannot be made mutable");
 		}
 
+		@Override
+		public Access merge(Access other) {
+			Access access = this;
+
+			if (other == ACCESSIBLE || other == ACCESSIBLE_EXTENDABLE) {
+				access = access.makeAccessible();
+			}
+
+			if (other == EXTENDABLE || other == ACCESSIBLE_EXTENDABLE) {
+				access = access.makeExtendable();
+			}
+
+			return access;
+		}
+
 		@Override
 		public int apply(int access, String targetName, int ownerAccess) {
 			return operator.apply(access, targetName, ownerAccess);
@@ -244,6 +597,21 @@ public final class AccessWidener implements AccessWidenerVisitor {
 			throw new UnsupportedOperationException("Methods cannot be made mutable");
 		}
 
+		@Override
+		public Access merge(Access other) {
+			Access access = this;
+
+			if (other == ACCESSIBLE || other == ACCESSIBLE_EXTENDABLE) {
+				access = access.makeAccessible();
+			}
+
+			if (other == EXTENDABLE || other == ACCESSIBLE_EXTENDABLE) {
+				access = access.makeExtendable();
+			}
+
+			return access;
+		}
+
 		@Override
 		public int apply(int access, String targetName, int ownerAccess) {
 			return operator.apply(access, targetName, ownerAccess);
@@ -299,6 +667,21 @@ public final class AccessWidener implements AccessWidenerVisitor {
 			return MUTABLE;
 		}
 
+		@Override
+		public Access merge(Access other) {
+			Access access = this;
+
+			if (other == ACCESSIBLE || other == ACCESSIBLE_MUTABLE) {
+				access = access.makeAccessible();
+			}
+
+			if (other == MUTABLE || other == ACCESSIBLE_MUTABLE) {
+				access = access.makeMutable();
+			}
+
+			return access;
+		}
+
 		@Override
 		public int apply(int access, String targetName, int ownerAccess) {
 			return operator.apply(access, targetName, ownerAccess);
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.ProtectionDomain;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Applies an {@link AccessWidener} to classes as they are loaded by the JVM, for environments without a custom
+ * class loader.
+ *
+ * <p>The jar can be used as a Java agent directly. The agent argument lists the access widener files to apply,
+ * separated by {@link File#pathSeparator}. When attached to a running JVM, the agent also retransforms the targets
+ * that were already loaded.
+ *
+ * <p>Classes that aren't targeted are left alone without allocating anything. Note that HotSpot rejects
+ * retransformations that change the modifiers of classes, fields or methods, so {@link #retransform} only takes
+ * effect on JVMs with enhanced class redefinition, and for classes that weren't loaded yet. Classes that can't be
+ * retransformed keep their previous state and are reported by {@link #agentmain}, the agent is attached regardless.
+ */
+public final class AccessWidenerAgent implements ClassFileTransformer {
+	private volatile AccessWidener accessWidener;
+
+	public AccessWidenerAgent(AccessWidener accessWidener) {
+		this.accessWidener = accessWidener;
+	}
+
+	public static void premain(String args, Instrumentation instrumentation) {
+		install(args, instrumentation);
+	}
+
+	/**
+	 * Attaches the agent to a running JVM and retransforms the targets that were already loaded.
+	 *
+	 * @throws IllegalStateException if any of them couldn't be retransformed, with the failure of every class as
+	 * suppressed exception. The agent stays attached for classes loaded afterwards.
+	 */
+	public static void agentmain(String args, Instrumentation instrumentation) {
+		AccessWidenerAgent agent = install(args, instrumentation);
+
+		if (!instrumentation.isRetransformClassesSupported()) {
+			return;
+		}
+
+		Map<String, Throwable> failures = agent.retransform(instrumentation, agent.accessWidener.getClassFingerprints().keySet());
+
+		if (!failures.isEmpty()) {
+			IllegalStateException e = new IllegalStateException("Failed to retransform " + failures.size() + " loaded classes");
+
+			for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+				e.addSuppressed(new IllegalStateException("Failed to retransform " + failure.getKey(), failure.getValue()));
+			}
+
+			throw e;
+		}
+	}
+
+	private static AccessWidenerAgent install(String args, Instrumentation instrumentation) {
+		AccessWidenerAgent agent = new AccessWidenerAgent(read(args));
+		instrumentation.addTransformer(agent, instrumentation.isRetransformClassesSupported());
+		return agent;
+	}
+
+	/**
+	 * Reads the access widener files listed in the agent argument.
+	 */
+	static AccessWidener read(String args) {
+		AccessWidener accessWidener = new AccessWidener();
+		AccessWidenerReader reader = new AccessWidenerReader(accessWidener);
+
+		if (args != null) {
+			for (String file : args.split(File.pathSeparator)) {
+				if (file.isEmpty()) {
+					continue;
+				}
+
+				try {
+					reader.read(Files.readAllBytes(Paths.get(file)));
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to read access widener " + file, e);
+				}
+			}
+		}
+
+		return accessWidener;
+	}
+
+	public AccessWidener getAccessWidener() {
+		return accessWidener;
+	}
+
+	/**
+	 * Replaces the rules applied to classes loaded from now on, for example with the rules of an
+	 * {@link AccessWidenerWatcher} after they changed. The access widener must not be changed afterwards.
+	 */
+	public void setAccessWidener(AccessWidener accessWidener) {
+		this.accessWidener = accessWidener;
+	}
+
+	@Override
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+			byte[] classfileBuffer) {
+		AccessWidener accessWidener = this.accessWidener;
+
+		if (className == null || !accessWidener.isTarget(className)) {
+			return null;
+		}
+
+		return AccessWidenerClassVisitor.transform(classfileBuffer, accessWidener);
+	}
+
+	/**
+	 * Retransforms the loaded classes among the given classes, for example the classes reported by an
+	 * {@link AccessWidenerWatcher} after the access widener changed. This transformer must have been added as
+	 * capable of retransformation.
+	 *
+	 * <p>The classes are retransformed one at a time, so a class the JVM refuses to retransform doesn't prevent
+	 * retransforming the others.
+	 *
+	 * @param classNames the class-file internal binary names of the classes
+	 * @return the failures by the class-file internal binary name of the class, empty if all classes were
+	 * retransformed
+	 */
+	public Map<String, Throwable> retransform(Instrumentation instrumentation, Collection<String> classNames) {
+		if (classNames.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		Set<String> names = classNames instanceof Set ? (Set<String>) classNames : new HashSet<>(classNames);
+		Map<String, Throwable> failures = new LinkedHashMap<>();
+
+		for (Class<?> loadedClass : instrumentation.getAllLoadedClasses()) {
+			if (loadedClass.isArray() || loadedClass.isPrimitive()) {
+				continue;
+			}
+
+			String name = Type.getInternalName(loadedClass);
+
+			if (!names.contains(name) || !instrumentation.isModifiableClass(loadedClass)) {
+				continue;
+			}
+
+			try {
+				instrumentation.retransformClasses(loadedClass);
+			} catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+				// HotSpot throws UnsupportedOperationException for modifier changes
+				failures.put(name, e);
+			}
+		}
+
+		return failures;
+	}
+}
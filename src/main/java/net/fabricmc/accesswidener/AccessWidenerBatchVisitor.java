@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+/**
+ * A visitor that can receive many entries in a single call.
+ *
+ * <p>Producers such as {@link AccessWidenerReader} pass whole batches to visitors implementing this interface, and
+ * individual entries to all other visitors. Decorating visitors should forward batches with
+ * {@link EntryBatch#forward(AccessWidenerVisitor)}, so a chain of batch visitors only makes one call per stage
+ * for every batch.
+ */
+public interface AccessWidenerBatchVisitor extends AccessWidenerVisitor {
+	/**
+	 * Visits a batch of entries, in order. The batch must not be used after this method returns.
+	 */
+	default void visitBatch(EntryBatch batch) {
+		batch.accept(this);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Remaps many access widener files at once.
+ *
+ * <p>The files are read, remapped and written concurrently on the given executor, sharing one
+ * {@link CachingRemapper} so symbols common to several files are only remapped once. Every file is written in the
+ * format version it was read in, with its entries in their original order.
+ */
+public final class AccessWidenerBulkRemapper {
+	private final Remapper remapper;
+	private final String fromNamespace;
+	private final String toNamespace;
+
+	/**
+	 * @param remapper      Will be used to remap names found in the access wideners. Must be safe to use from
+	 *                      multiple threads.
+	 * @param fromNamespace The expected namespace of the access wideners being remapped.
+	 * @param toNamespace   The namespace that the access wideners will be remapped to.
+	 */
+	public AccessWidenerBulkRemapper(Remapper remapper, String fromNamespace, String toNamespace) {
+		this.remapper = new CachingRemapper(remapper);
+		this.fromNamespace = fromNamespace;
+		this.toNamespace = toNamespace;
+	}
+
+	/**
+	 * Remaps the given access widener files.
+	 *
+	 * <p>A file that fails to be remapped doesn't affect the others, its error is returned in its result instead.
+	 *
+	 * @param inputs   the content of the access widener files to remap, by an arbitrary key
+	 * @param executor runs the remapping of the individual files
+	 * @return the results, by the key of their input and in the iteration order of the inputs
+	 */
+	public <K> Map<K, Result> remap(Map<K, byte[]> inputs, Executor executor) {
+		Map<K, CompletableFuture<Result>> futures = new LinkedHashMap<>();
+
+		for (Map.Entry<K, byte[]> input : inputs.entrySet()) {
+			byte[] content = input.getValue();
+			futures.put(input.getKey(), CompletableFuture.supplyAsync(() -> remap(content), executor));
+		}
+
+		Map<K, Result> results = new LinkedHashMap<>();
+
+		for (Map.Entry<K, CompletableFuture<Result>> future : futures.entrySet()) {
+			results.put(future.getKey(), future.getValue().join());
+		}
+
+		return results;
+	}
+
+	private Result remap(byte[] content) {
+		try {
+			return new Result(AccessWidenerRemapper.remap(content, remapper, fromNamespace, toNamespace), null);
+		} catch (RuntimeException e) {
+			return new Result(null, e);
+		}
+	}
+
+	/**
+	 * The outcome of remapping a single access widener file.
+	 */
+	public static final class Result {
+		private final byte[] output;
+		private final RuntimeException error;
+
+		Result(byte[] output, RuntimeException error) {
+			this.output = output;
+			this.error = error;
+		}
+
+		public boolean isSuccessful() {
+			return error == null;
+		}
+
+		/**
+		 * The remapped access widener file, or null if remapping failed.
+		 */
+		public byte[] getOutput() {
+			return output;
+		}
+
+		/**
+		 * The reason remapping failed, or null if it succeeded.
+		 */
+		public RuntimeException getError() {
+			return error;
+		}
+	}
+}
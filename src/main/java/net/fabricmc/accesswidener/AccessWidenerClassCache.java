@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Caches classes transformed by {@link AccessWidenerClassVisitor}.
+ *
+ * <p>Transformed classes are looked up by a hash of the original class file and the
+ * {@linkplain AccessWidener#getFingerprint() fingerprint} of all rules. The transformation of a class also depends on
+ * the rules of the classes it references, like the nested classes in its inner class attributes, so any change to
+ * the rules invalidates all cached classes. The most recently used classes are kept in memory, up to the given
+ * number of bytes. If a directory is given, all transformed classes are also stored there, so they can be reused by
+ * later runs and other processes using the same rules.
+ *
+ * <p>The access widener must not be changed after the cache has been created.
+ */
+public final class AccessWidenerClassCache {
+	// Appended to the keys, must be changed whenever the output of AccessWidenerClassVisitor changes
+	private static final String FORMAT_VERSION = "-1";
+
+	private final AccessWidener accessWidener;
+	private final String fingerprint;
+	private final ContentStore store;
+	private final long maxMemoryBytes;
+	// Access-ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<String, byte[]> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+	private long memoryBytes;
+
+	/**
+	 * @param accessWidener  The rules to apply to the classes.
+	 * @param maxMemoryBytes The maximum combined size of the transformed classes kept in memory.
+	 * @param directory      The directory to store transformed classes in, or null to only cache them in memory.
+	 */
+	public AccessWidenerClassCache(AccessWidener accessWidener, long maxMemoryBytes, Path directory) {
+		this.accessWidener = accessWidener;
+		this.fingerprint = Long.toHexString(accessWidener.getFingerprint());
+		this.store = directory != null ? new ContentStore(directory) : null;
+		this.maxMemoryBytes = maxMemoryBytes;
+	}
+
+	/**
+	 * Applies the access widener to a class, reusing a previous result for the same class and rules if possible.
+	 *
+	 * @param className  the class-file internal binary name of the class
+	 * @param classBytes the original class file
+	 * @return the transformed class file, which the caller may modify, or {@code classBytes} if the class isn't
+	 * targeted by the access widener
+	 */
+	public byte[] transform(String className, byte[] classBytes) {
+		if (!accessWidener.isTarget(className)) {
+			return classBytes;
+		}
+
+		String key = ContentStore.hash(classBytes) + fingerprint + FORMAT_VERSION;
+		byte[] transformed = getFromMemory(key);
+
+		if (transformed != null) {
+			// The cached array is shared, so callers get their own copy
+			return transformed.clone();
+		}
+
+		transformed = readFromStore(key);
+
+		if (transformed == null) {
+			transformed = AccessWidenerClassVisitor.transform(classBytes, accessWidener);
+			writeToStore(key, transformed);
+		}
+
+		putInMemory(key, transformed);
+		return transformed.clone();
+	}
+
+	private synchronized byte[] getFromMemory(String key) {
+		return memoryCache.get(key);
+	}
+
+	private synchronized void putInMemory(String key, byte[] transformed) {
+		if (transformed.length > maxMemoryBytes) {
+			return;
+		}
+
+		byte[] previous = memoryCache.put(key, transformed);
+
+		if (previous != null) {
+			memoryBytes -= previous.length;
+		}
+
+		memoryBytes += transformed.length;
+
+		Iterator<byte[]> it = memoryCache.values().iterator();
+
+		while (memoryBytes > maxMemoryBytes) {
+			memoryBytes -= it.next().length;
+			it.remove();
+		}
+	}
+
+	private byte[] readFromStore(String key) {
+		if (store == null) {
+			return null;
+		}
+
+		try {
+			return store.read(key);
+		} catch (IOException e) {
+			// Treat unreadable entries as missing, they will be overwritten with a fresh result
+			return null;
+		}
+	}
+
+	private void writeToStore(String key, byte[] transformed) {
+		if (store == null) {
+			return;
+		}
+
+		try {
+			store.write(key, transformed);
+		} catch (IOException e) {
+			// The cache is only an optimization, failing to populate it mustn't fail the transformation
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Applies rules from an {@link AccessWidener} to an ASM {@link ClassNode} in place.
+ *
+ * <p>This produces the same result as passing the class through {@link AccessWidenerClassVisitor}, but only
+ * changes the access flags and instructions that are actually affected instead of copying the whole class.
+ */
+public final class AccessWidenerClassNodeTransformer {
+	private AccessWidenerClassNodeTransformer() {
+	}
+
+	public static void transform(ClassNode classNode, AccessWidener accessWidener) {
+		String className = classNode.name;
+		int classAccess = classNode.access;
+		AccessWidener.Access access = accessWidener.getClassAccess(className);
+
+		classNode.access = access.apply(classAccess, className, classAccess);
+
+		if (access == AccessWidener.ClassAccess.EXTENDABLE || access == AccessWidener.ClassAccess.ACCESSIBLE_EXTENDABLE) {
+			classNode.permittedSubclasses = null;
+		}
+
+		for (InnerClassNode innerClass : classNode.innerClasses) {
+			innerClass.access = accessWidener.getClassAccess(innerClass.name).apply(innerClass.access, innerClass.name, classAccess);
+		}
+
+		for (FieldNode field : classNode.fields) {
+			field.access = accessWidener.getFieldAccess(new EntryTriple(className, field.name, field.desc)).apply(field.access, field.name, classAccess);
+		}
+
+		boolean hasWidenedMethods = false;
+
+		for (MethodNode method : classNode.methods) {
+			AccessWidener.Access methodAccess = accessWidener.getMethodAccess(new EntryTriple(className, method.name, method.desc));
+			method.access = methodAccess.apply(method.access, method.name, classAccess);
+			hasWidenedMethods |= methodAccess != AccessWidener.MethodAccess.DEFAULT && !method.name.equals("<init>");
+		}
+
+		// Calls to methods of this class only need to be rewritten if one of its methods was widened
+		if (hasWidenedMethods) {
+			for (MethodNode method : classNode.methods) {
+				rewriteInvokeSpecial(method, className, accessWidener);
+			}
+		}
+	}
+
+	private static void rewriteInvokeSpecial(MethodNode method, String className, AccessWidener accessWidener) {
+		for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+			if (insn.getOpcode() == Opcodes.INVOKESPECIAL) {
+				MethodInsnNode methodInsn = (MethodInsnNode) insn;
+
+				if (isTargetMethod(className, methodInsn.owner, methodInsn.name, methodInsn.desc, accessWidener)) {
+					methodInsn.setOpcode(Opcodes.INVOKEVIRTUAL);
+				}
+			} else if (insn.getOpcode() == Opcodes.INVOKEDYNAMIC) {
+				Object[] bootstrapMethodArguments = ((InvokeDynamicInsnNode) insn).bsmArgs;
+
+				for (int i = 0; i < bootstrapMethodArguments.length; i++) {
+					if (bootstrapMethodArguments[i] instanceof Handle) {
+						Handle handle = (Handle) bootstrapMethodArguments[i];
+
+						if (handle.getTag() == Opcodes.H_INVOKESPECIAL && isTargetMethod(className, handle.getOwner(), handle.getName(), handle.getDesc(), accessWidener)) {
+							bootstrapMethodArguments[i] = new Handle(Opcodes.H_INVOKEVIRTUAL, handle.getOwner(), handle.getName(), handle.getDesc(), handle.isInterface());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isTargetMethod(String className, String owner, String name, String descriptor, AccessWidener accessWidener) {
+		return owner.equals(className) && !name.equals("<init>") && accessWidener.getMethodAccess(new EntryTriple(owner, name, descriptor)) != AccessWidener.MethodAccess.DEFAULT;
+	}
+}
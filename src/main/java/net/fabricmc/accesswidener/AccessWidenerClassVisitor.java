@@ -16,11 +16,15 @@
 
 package net.fabricmc.accesswidener;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
 
 /**
  * Applies rules from an {@link AccessWidener} by transforming Java classes using an ASM {@link ClassVisitor}.
@@ -39,6 +43,28 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 		return new AccessWidenerClassVisitor(api, visitor, accessWidener);
 	}
 
+	/**
+	 * Creates a visitor that remaps classes and applies the access widener to them in the same pass.
+	 *
+	 * <p>The names are remapped before the access widener sees them, so its rules must be in the namespace the classes
+	 * are remapped to. Such an access widener can be created by reading the original rules through an
+	 * {@link AccessWidenerRemapper} using the same remapper.
+	 */
+	public static ClassVisitor createRemappingClassVisitor(int api, ClassVisitor visitor, AccessWidener accessWidener, Remapper remapper) {
+		return new RemappingClassVisitor(api, createClassVisitor(api, visitor, accessWidener), remapper);
+	}
+
+	/**
+	 * Reads the given class file, applies the access widener to it and writes it back.
+	 */
+	static byte[] transform(byte[] classBytes, AccessWidener accessWidener) {
+		ClassReader classReader = new ClassReader(classBytes);
+		// Passing the reader lets ASM copy the constant pool instead of rebuilding it
+		ClassWriter classWriter = new ClassWriter(classReader, 0);
+		classReader.accept(new AccessWidenerClassVisitor(Opcodes.ASM9, classWriter, accessWidener), 0);
+		return classWriter.toByteArray();
+	}
+
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
 		className = name;
@@ -130,4 +156,11 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 			return owner.equals(className) && !name.equals("<init>") && accessWidener.getMethodAccess(new EntryTriple(owner, name, descriptor)) != AccessWidener.MethodAccess.DEFAULT;
 		}
 	}
+
+	// Exposes the constructor of ClassRemapper that accepts an api version
+	private static final class RemappingClassVisitor extends ClassRemapper {
+		RemappingClassVisitor(int api, ClassVisitor classVisitor, Remapper remapper) {
+			super(api, classVisitor, remapper);
+		}
+	}
 }
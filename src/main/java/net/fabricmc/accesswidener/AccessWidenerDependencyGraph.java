@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Computes the effective access widener of every mod in a dependency graph.
+ *
+ * <p>The effective access widener of a mod contains all entries of its own access wideners, and the transitive
+ * entries of the access wideners of all mods it depends on, directly or indirectly.
+ *
+ * <p>Every access widener is read only once. The transitive entries a mod exports are stored in an access widener
+ * built on top of the one exported by a dependency, see {@link AccessWidener#AccessWidener(AccessWidener)}, and the
+ * effective access widener of a mod is built on top of one of those as well. So every mod only stores and visits the
+ * entries it adds, rather than all entries of its dependencies. Lookups go through every layer though, so once
+ * {@link #MAX_DEPTH} layers are stacked, the next access widener starts from a flat copy of its base instead. Reading
+ * the access wideners and building the effective access wideners of the mods runs in parallel.
+ */
+public final class AccessWidenerDependencyGraph {
+	/**
+	 * The most layers an access widener is built on, which bounds the cost of looking up rules in deep dependency
+	 * chains.
+	 */
+	static final int MAX_DEPTH = 4;
+
+	private final String namespace;
+	private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+	/**
+	 * @param namespace The namespace all access wideners must be in.
+	 */
+	public AccessWidenerDependencyGraph(String namespace) {
+		this.namespace = namespace;
+	}
+
+	/**
+	 * Adds a mod to the graph.
+	 *
+	 * <p>Mods without access wideners must be added as well, without sources, so transitive entries propagate
+	 * through them. Dependencies that aren't part of the graph are ignored.
+	 *
+	 * @param id           Identifies the mod.
+	 * @param dependencies The ids of the mods this mod depends on.
+	 * @param sources      The content of the mod's access widener files.
+	 */
+	public AccessWidenerDependencyGraph addNode(String id, Collection<String> dependencies, byte[]... sources) {
+		if (nodes.putIfAbsent(id, new Node(id, new ArrayList<>(dependencies), Arrays.asList(sources))) != null) {
+			throw new IllegalArgumentException("Duplicate node " + id);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Computes the effective access widener of every mod.
+	 *
+	 * @return the access wideners by mod id, in the order the mods were added
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 * @throws AccessWidenerFormatException if an access widener can't be read
+	 */
+	public Map<String, AccessWidener> compute(Executor executor) {
+		// Resolve the graph first, so cycles are reported before any work is started
+		Map<String, Set<Node>> exporters = new HashMap<>();
+
+		for (Node node : nodes.values()) {
+			getExporters(node, exporters, new HashSet<>());
+		}
+
+		List<CompletableFuture<Void>> reads = new ArrayList<>(nodes.size());
+
+		for (Node node : nodes.values()) {
+			reads.add(CompletableFuture.runAsync(node::read, executor));
+		}
+
+		join(CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])));
+
+		Map<String, CompletableFuture<AccessWidener>> exported = new HashMap<>();
+		Map<String, CompletableFuture<AccessWidener>> futures = new LinkedHashMap<>();
+
+		for (Node node : nodes.values()) {
+			futures.put(node.id, withBase(node, exporters, exported, executor, (base, replay) -> {
+				AccessWidener accessWidener = layer(base, replay);
+				node.all.accept(accessWidener);
+				return accessWidener;
+			}));
+		}
+
+		Map<String, AccessWidener> result = new LinkedHashMap<>();
+
+		for (Map.Entry<String, CompletableFuture<AccessWidener>> entry : futures.entrySet()) {
+			result.put(entry.getKey(), join(entry.getValue()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the access widener containing the transitive entries of the node and all nodes it depends on, which
+	 * the access wideners of the nodes depending on it are built on.
+	 */
+	private CompletableFuture<AccessWidener> getExported(Node node, Map<String, Set<Node>> exporters,
+			Map<String, CompletableFuture<AccessWidener>> exported, Executor executor) {
+		CompletableFuture<AccessWidener> future = exported.get(node.id);
+
+		if (future == null) {
+			future = withBase(node, exporters, exported, executor, (base, replay) -> {
+				if (node.sources.isEmpty() && replay.isEmpty() && base != null) {
+					// Nothing to add, nodes without access wideners pass on the entries of their dependency as is
+					return base;
+				}
+
+				AccessWidener accessWidener = layer(base, replay);
+				node.transitive.accept(accessWidener);
+				return accessWidener;
+			});
+			exported.put(node.id, future);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Builds an access widener for the node on top of the exported access widener of one of its dependencies, the
+	 * one with the most exporters. The transitive entries of the exporters it doesn't include have to be added.
+	 */
+	private CompletableFuture<AccessWidener> withBase(Node node, Map<String, Set<Node>> exporters,
+			Map<String, CompletableFuture<AccessWidener>> exported, Executor executor, Builder builder) {
+		List<Node> dependencies = node.getDependencies();
+		Node baseNode = null;
+
+		for (Node dependency : dependencies) {
+			if (baseNode == null || exporters.get(dependency.id).size() > exporters.get(baseNode.id).size()) {
+				baseNode = dependency;
+			}
+		}
+
+		// Nodes reachable through several dependencies only contribute once
+		Set<Node> replay = new LinkedHashSet<>();
+
+		for (Node dependency : dependencies) {
+			replay.addAll(exporters.get(dependency.id));
+		}
+
+		if (baseNode == null) {
+			return CompletableFuture.supplyAsync(() -> builder.build(null, replay), executor);
+		}
+
+		replay.removeAll(exporters.get(baseNode.id));
+		return getExported(baseNode, exporters, exported, executor).thenApplyAsync(base -> builder.build(base, replay), executor);
+	}
+
+	private AccessWidener layer(AccessWidener base, Set<Node> replay) {
+		AccessWidener accessWidener;
+
+		if (base == null) {
+			accessWidener = new AccessWidener();
+		} else if (base.depth < MAX_DEPTH) {
+			accessWidener = new AccessWidener(base);
+		} else {
+			// Flattened, the nodes depending on this one are layered on the copy again
+			accessWidener = base.copy();
+		}
+
+		accessWidener.visitHeader(namespace);
+
+		for (Node exporter : replay) {
+			exporter.transitive.accept(accessWidener);
+		}
+
+		return accessWidener;
+	}
+
+	/**
+	 * Returns the node and all nodes it depends on, which are the nodes exporting transitive entries through it.
+	 */
+	private Set<Node> getExporters(Node node, Map<String, Set<Node>> exporters, Set<String> visiting) {
+		Set<Node> result = exporters.get(node.id);
+
+		if (result != null) {
+			return result;
+		}
+
+		if (!visiting.add(node.id)) {
+			throw new IllegalArgumentException("Dependency cycle involving " + node.id);
+		}
+
+		result = new LinkedHashSet<>();
+		result.add(node);
+
+		for (Node dependency : node.getDependencies()) {
+			result.addAll(getExporters(dependency, exporters, visiting));
+		}
+
+		visiting.remove(node.id);
+		result = Collections.unmodifiableSet(result);
+		exporters.put(node.id, result);
+		return result;
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw e;
+		}
+	}
+
+	private interface Builder {
+		AccessWidener build(AccessWidener base, Set<Node> replay);
+	}
+
+	private final class Node {
+		final String id;
+		final List<String> dependencyIds;
+		final List<byte[]> sources;
+		final RecordingVisitor all = new RecordingVisitor();
+		final RecordingVisitor transitive = new RecordingVisitor();
+		// Kept when computing again after adding more nodes
+		boolean read;
+
+		Node(String id, List<String> dependencyIds, List<byte[]> sources) {
+			this.id = id;
+			this.dependencyIds = dependencyIds;
+			this.sources = sources;
+		}
+
+		List<Node> getDependencies() {
+			List<Node> dependencies = new ArrayList<>(dependencyIds.size());
+
+			for (String dependencyId : dependencyIds) {
+				Node dependency = nodes.get(dependencyId);
+
+				if (dependency != null) {
+					dependencies.add(dependency);
+				}
+			}
+
+			return dependencies;
+		}
+
+		void read() {
+			if (read) {
+				return;
+			}
+
+			AccessWidenerReader reader = new AccessWidenerReader(new ForwardingVisitor(all, new TransitiveOnlyFilter(transitive)));
+
+			for (byte[] source : sources) {
+				reader.read(source, namespace);
+			}
+
+			read = true;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decorates a visitor to only receive the entries matching a combination of conditions. Headers are always
+ * forwarded.
+ *
+ * <p>All conditions are checked by a single visitor, so any number of them costs one call per entry. For example,
+ * the equivalent of {@link TransitiveOnlyFilter} limited to a package is:
+ *
+ * <pre>{@code
+ * AccessWidenerVisitor visitor = new AccessWidenerFilter.Builder()
+ *         .transitiveOnly()
+ *         .packages("net/minecraft/world")
+ *         .build(delegate);
+ * }</pre>
+ */
+public final class AccessWidenerFilter implements AccessWidenerBatchVisitor {
+	private final AccessWidenerVisitor delegate;
+	private final boolean transitiveOnly;
+	// Indexed by ordinal
+	private final boolean[] kinds;
+	private final boolean[] accessTypes;
+	// Null if owners aren't filtered
+	private final Set<String> owners;
+	private final PackageTrie packages;
+	private final Matcher nameMatcher;
+	private final EntryBatch filtered = new EntryBatch();
+
+	private AccessWidenerFilter(AccessWidenerVisitor delegate, Builder builder) {
+		this.delegate = delegate;
+		this.transitiveOnly = builder.transitiveOnly;
+		this.kinds = builder.kinds.clone();
+		this.accessTypes = builder.accessTypes.clone();
+
+		if (builder.owners.isEmpty() && builder.packages.isEmpty()) {
+			this.owners = null;
+			this.packages = null;
+		} else {
+			this.owners = new HashSet<>(builder.owners);
+			this.packages = new PackageTrie();
+
+			for (String pkg : builder.packages) {
+				packages.add(pkg);
+			}
+		}
+
+		this.nameMatcher = builder.namePattern != null ? builder.namePattern.matcher("") : null;
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		delegate.visitHeader(namespace);
+	}
+
+	@Override
+	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (test(EntryBatch.Kind.CLASS, name, name, access, transitive)) {
+			delegate.visitClass(name, access, transitive);
+		}
+	}
+
+	@Override
+	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (test(EntryBatch.Kind.METHOD, owner, name, access, transitive)) {
+			delegate.visitMethod(owner, name, descriptor, access, transitive);
+		}
+	}
+
+	@Override
+	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (test(EntryBatch.Kind.FIELD, owner, name, access, transitive)) {
+			delegate.visitField(owner, name, descriptor, access, transitive);
+		}
+	}
+
+	@Override
+	public void visitBatch(EntryBatch batch) {
+		filtered.clear();
+
+		for (int i = 0; i < batch.size(); i++) {
+			EntryBatch.Kind kind = batch.getKind(i);
+			String owner = batch.getOwner(i);
+			String name = kind == EntryBatch.Kind.CLASS ? owner : batch.getName(i);
+
+			if (test(kind, owner, name, batch.getAccess(i), batch.isTransitive(i))) {
+				filtered.add(kind, owner, batch.getName(i), batch.getDescriptor(i), batch.getAccess(i), batch.isTransitive(i));
+			}
+		}
+
+		if (!filtered.isEmpty()) {
+			filtered.forward(delegate);
+		}
+	}
+
+	private boolean test(EntryBatch.Kind kind, String owner, String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		// Cheapest checks first
+		if (transitiveOnly && !transitive) {
+			return false;
+		}
+
+		if (!kinds[kind.ordinal()] || !accessTypes[access.ordinal()]) {
+			return false;
+		}
+
+		if (owners != null && !owners.contains(owner) && !packages.contains(owner)) {
+			return false;
+		}
+
+		return nameMatcher == null || nameMatcher.reset(name).matches();
+	}
+
+	public static final class Builder {
+		private boolean transitiveOnly;
+		private final boolean[] kinds = new boolean[EntryBatch.Kind.values().length];
+		private final boolean[] accessTypes = new boolean[AccessWidenerReader.AccessType.values().length];
+		private final Set<String> owners = new HashSet<>();
+		private final Set<String> packages = new HashSet<>();
+		private Pattern namePattern;
+
+		public Builder() {
+			Arrays.fill(kinds, true);
+			Arrays.fill(accessTypes, true);
+		}
+
+		/**
+		 * Only keeps transitive entries.
+		 */
+		public Builder transitiveOnly() {
+			transitiveOnly = true;
+			return this;
+		}
+
+		/**
+		 * Only keeps entries of the given kinds.
+		 */
+		public Builder kinds(EntryBatch.Kind... kinds) {
+			Arrays.fill(this.kinds, false);
+
+			for (EntryBatch.Kind kind : kinds) {
+				this.kinds[kind.ordinal()] = true;
+			}
+
+			return this;
+		}
+
+		/**
+		 * Only keeps entries with one of the given access types.
+		 */
+		public Builder accessTypes(AccessWidenerReader.AccessType... accessTypes) {
+			Arrays.fill(this.accessTypes, false);
+
+			for (AccessWidenerReader.AccessType accessType : accessTypes) {
+				this.accessTypes[accessType.ordinal()] = true;
+			}
+
+			return this;
+		}
+
+		/**
+		 * Keeps entries for the given classes, or members of them. Can be combined with {@link #packages}, in which
+		 * case entries matching either are kept.
+		 *
+		 * @param owners class-file internal binary names, such as {@code a/b/C}
+		 */
+		public Builder owners(String... owners) {
+			this.owners.addAll(Arrays.asList(owners));
+			return this;
+		}
+
+		/**
+		 * Keeps entries for classes in the given packages or their subpackages, or members of them. Can be combined
+		 * with {@link #owners}, in which case entries matching either are kept.
+		 *
+		 * @param packages package names using slashes as separators, such as {@code a/b}
+		 */
+		public Builder packages(String... packages) {
+			this.packages.addAll(Arrays.asList(packages));
+			return this;
+		}
+
+		/**
+		 * Only keeps entries whose name matches the pattern: the member name for fields and methods, and the
+		 * class name for classes.
+		 */
+		public Builder namePattern(Pattern namePattern) {
+			this.namePattern = namePattern;
+			return this;
+		}
+
+		/**
+		 * Creates a filter forwarding the matching entries to the delegate. The builder can be reused.
+		 */
+		public AccessWidenerFilter build(AccessWidenerVisitor delegate) {
+			return new AccessWidenerFilter(delegate, this);
+		}
+	}
+
+	/**
+	 * Matches class names against package prefixes without allocating, one character at a time.
+	 */
+	private static final class PackageTrie {
+		private final Node root = new Node();
+
+		void add(String pkg) {
+			Node node = root;
+
+			for (int i = 0; i < pkg.length(); i++) {
+				node = node.getOrCreate(pkg.charAt(i));
+			}
+
+			// Only match whole package names, a/b mustn't match a/bc/D
+			node.getOrCreate('/').terminal = true;
+		}
+
+		boolean contains(String className) {
+			Node node = root;
+
+			for (int i = 0; i < className.length(); i++) {
+				node = node.get(className.charAt(i));
+
+				if (node == null) {
+					return false;
+				} else if (node.terminal) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	private static final class Node {
+		char[] keys = new char[0];
+		Node[] children = new Node[0];
+		boolean terminal;
+
+		Node get(char key) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == key) {
+					return children[i];
+				}
+			}
+
+			return null;
+		}
+
+		Node getOrCreate(char key) {
+			Node child = get(key);
+
+			if (child == null) {
+				child = new Node();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				keys[keys.length - 1] = key;
+				children[children.length - 1] = child;
+			}
+
+			return child;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Remaps the names passing through the visitor into several namespaces at once, forwarding each result to the
+ * visitor of its namespace.
+ *
+ * <p>Every descriptor is only split into its class names once, which are then remapped individually for every target.
+ * Class names are therefore remapped with {@link Remapper#map(String)}, keeping names it doesn't map, like
+ * {@link Remapper#mapDesc(String)} does by default. Remappers that override {@code mapDesc}, {@code mapMethodDesc} or
+ * {@code mapType} aren't honoured, use {@link AccessWidenerRemapper} for those.
+ */
+public final class AccessWidenerMultiRemapper implements AccessWidenerVisitor {
+	private final String fromNamespace;
+	private final Function<String, String[]> descriptorSplitter;
+	private final List<Target> targets = new ArrayList<>();
+
+	/**
+	 * @param fromNamespace The expected namespace of the access widener being remapped. Remapping fails if the
+	 *                      actual namespace is different.
+	 */
+	public AccessWidenerMultiRemapper(String fromNamespace) {
+		this(fromNamespace, AccessWidenerMultiRemapper::splitDescriptor);
+	}
+
+	AccessWidenerMultiRemapper(String fromNamespace, Function<String, String[]> descriptorSplitter) {
+		this.fromNamespace = fromNamespace;
+		this.descriptorSplitter = descriptorSplitter;
+	}
+
+	/**
+	 * Adds a namespace to remap to.
+	 *
+	 * @param delegate    The visitor to forward the information remapped to this namespace to.
+	 * @param remapper    Will be used to remap names to this namespace.
+	 * @param toNamespace The namespace to remap to.
+	 * @return this remapper
+	 */
+	public AccessWidenerMultiRemapper addTarget(AccessWidenerVisitor delegate, Remapper remapper, String toNamespace) {
+		targets.add(new Target(delegate, remapper, toNamespace));
+		return this;
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		if (!this.fromNamespace.equals(namespace)) {
+			throw new IllegalArgumentException("Cannot remap access widener from namespace '" + namespace + "'."
+					+ " Expected: '" + this.fromNamespace + "'");
+		}
+
+		for (Target target : targets) {
+			target.delegate.visitHeader(target.toNamespace);
+		}
+	}
+
+	@Override
+	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		for (Target target : targets) {
+			target.delegate.visitClass(target.mapClass(name), access, transitive);
+		}
+	}
+
+	@Override
+	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		String[] descriptorParts = descriptorSplitter.apply(descriptor);
+
+		for (Target target : targets) {
+			target.delegate.visitMethod(
+					target.mapClass(owner),
+					target.remapper.mapMethodName(owner, name, descriptor),
+					target.mapDescriptor(descriptorParts),
+					access,
+					transitive
+			);
+		}
+	}
+
+	@Override
+	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		String[] descriptorParts = descriptorSplitter.apply(descriptor);
+
+		for (Target target : targets) {
+			target.delegate.visitField(
+					target.mapClass(owner),
+					target.remapper.mapFieldName(owner, name, descriptor),
+					target.mapDescriptor(descriptorParts),
+					access,
+					transitive
+			);
+		}
+	}
+
+	/**
+	 * Splits a field or method descriptor around the internal names of the classes it references.
+	 *
+	 * @return the parts of the descriptor, where every odd index holds a class name
+	 */
+	static String[] splitDescriptor(String descriptor) {
+		List<String> parts = new ArrayList<>();
+		int partStart = 0;
+
+		for (int i = 0; i < descriptor.length(); i++) {
+			if (descriptor.charAt(i) == 'L') {
+				int end = descriptor.indexOf(';', i);
+
+				if (end < 0) {
+					throw new IllegalArgumentException("Invalid descriptor: " + descriptor);
+				}
+
+				parts.add(descriptor.substring(partStart, i + 1));
+				parts.add(descriptor.substring(i + 1, end));
+				partStart = end;
+				i = end;
+			}
+		}
+
+		parts.add(descriptor.substring(partStart));
+		return parts.toArray(new String[0]);
+	}
+
+	private static final class Target {
+		final AccessWidenerVisitor delegate;
+		final Remapper remapper;
+		final String toNamespace;
+
+		Target(AccessWidenerVisitor delegate, Remapper remapper, String toNamespace) {
+			this.delegate = delegate;
+			this.remapper = remapper;
+			this.toNamespace = toNamespace;
+		}
+
+		String mapClass(String name) {
+			String mapped = remapper.map(name);
+			return mapped != null ? mapped : name;
+		}
+
+		String mapDescriptor(String[] parts) {
+			if (parts.length == 1) {
+				// Only primitive types
+				return parts[0];
+			}
+
+			StringBuilder sb = new StringBuilder();
+
+			for (int i = 0; i < parts.length; i++) {
+				sb.append(i % 2 == 0 ? parts[i] : mapClass(parts[i]));
+			}
+
+			return sb.toString();
+		}
+	}
+}
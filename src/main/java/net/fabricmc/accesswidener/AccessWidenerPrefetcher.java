@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Transforms the targets of an {@link AccessWidener} in the background, before they are requested by a class loader.
+ *
+ * <p>Once {@link #start()} has been called, the targeted classes are fetched from the class source and transformed
+ * on the given executor. The only ordering is by nesting depth, outer classes first, since they are usually loaded
+ * before their nested classes. The class loader then calls {@link #take(String)} when it loads a class. Classes whose
+ * task hasn't started yet are left to the class loader. Classes whose task is in progress are waited for, which
+ * delays loading them by at most the time it takes to fetch and transform one class from the class source.
+ *
+ * <p>Results are kept until they are taken, so results of classes that are never loaded stay in memory until
+ * {@link #close()} is called, usually once the application has finished loading.
+ *
+ * <p>The access widener must not be changed after the prefetcher has been started.
+ */
+public final class AccessWidenerPrefetcher implements AutoCloseable {
+	private final AccessWidener accessWidener;
+	private final Function<String, byte[]> classSource;
+	private final Executor executor;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	/**
+	 * @param accessWidener The rules to apply to the classes.
+	 * @param classSource   Returns the original class file for a class-file internal binary name, or null if the
+	 *                      class doesn't exist. Called from the executor's threads.
+	 * @param executor      Runs the background transformations.
+	 */
+	public AccessWidenerPrefetcher(AccessWidener accessWidener, Function<String, byte[]> classSource, Executor executor) {
+		this.accessWidener = accessWidener;
+		this.classSource = classSource;
+		this.executor = executor;
+	}
+
+	/**
+	 * Schedules the transformation of all targets of the access widener.
+	 */
+	public void start() {
+		if (closed) {
+			throw new IllegalStateException("The prefetcher has been closed");
+		}
+
+		List<String> classNames = new ArrayList<>(accessWidener.getTargets().size());
+
+		for (String target : accessWidener.getTargets()) {
+			classNames.add(target.replace('.', '/'));
+		}
+
+		// Outer classes are usually loaded before their nested classes. The sort is stable, so classes of the
+		// same depth keep the order in which they were declared.
+		classNames.sort(Comparator.comparingInt(AccessWidenerPrefetcher::getNestingDepth));
+
+		for (String className : classNames) {
+			Entry entry = new Entry();
+
+			if (entries.putIfAbsent(className, entry) == null) {
+				executor.execute(() -> transform(className, entry));
+			}
+		}
+	}
+
+	/**
+	 * Removes the prefetched result for a class. Waits for the transformation to complete if it is in progress.
+	 *
+	 * @param className the class-file internal binary name of the class
+	 * @return the transformed class file, or null if the class was not prefetched and has to be transformed by
+	 * the caller
+	 */
+	public byte[] take(String className) {
+		Entry entry = entries.remove(className);
+
+		if (entry == null || entry.claimed.compareAndSet(false, true)) {
+			// Not a target, or still queued. Transforming it on the caller's thread is faster than waiting.
+			return null;
+		}
+
+		try {
+			return entry.result.join();
+		} catch (CompletionException e) {
+			// Let the caller transform the class again, so the failure surfaces while loading the class
+			return null;
+		}
+	}
+
+	/**
+	 * Discards the results that weren't taken and skips the classes whose task hasn't started yet. Classes loaded
+	 * afterwards are left to the class loader. Tasks in progress still complete, but their results are discarded.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		for (Entry entry : entries.values()) {
+			entry.claimed.set(true);
+		}
+
+		entries.clear();
+	}
+
+	private void transform(String className, Entry entry) {
+		if (!entry.claimed.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			byte[] classBytes = classSource.apply(className);
+			entry.result.complete(classBytes != null ? AccessWidenerClassVisitor.transform(classBytes, accessWidener) : null);
+		} catch (Throwable t) {
+			entry.result.completeExceptionally(t);
+		}
+	}
+
+	private static int getNestingDepth(String className) {
+		int depth = 0;
+
+		for (int i = className.indexOf('$'); i >= 0; i = className.indexOf('$', i + 1)) {
+			depth++;
+		}
+
+		return depth;
+	}
+
+	private static final class Entry {
+		// Set by whoever gets to the class first: the background task or the class loader
+		final AtomicBoolean claimed = new AtomicBoolean();
+		final CompletableFuture<byte[]> result = new CompletableFuture<>();
+	}
+}
@@ -41,11 +41,33 @@ public final class AccessWidenerReader {
 	private static final int V2 = 2;
 
 	private final AccessWidenerVisitor visitor;
+	private final EntryBatch batch;
+	private final int batchSize;
 
 	private int lineNumber;
+	// Line of the first entry in the current batch
+	private int batchLineNumber;
 
 	public AccessWidenerReader(AccessWidenerVisitor visitor) {
 		this.visitor = visitor;
+		this.batch = null;
+		this.batchSize = 0;
+	}
+
+	/**
+	 * Constructs a reader that passes entries to the visitor in batches of up to the given size, see
+	 * {@link AccessWidenerBatchVisitor}. Visitors that don't implement it still receive the entries one by one.
+	 *
+	 * <p>Errors thrown by the visitor are reported at the line of the first entry of the failing batch.
+	 */
+	public AccessWidenerReader(AccessWidenerVisitor visitor, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+
+		this.visitor = visitor;
+		this.batch = new EntryBatch(batchSize);
+		this.batchSize = batchSize;
 	}
 
 	public static int readVersion(byte[] content) {
@@ -78,6 +100,11 @@ public final class AccessWidenerReader {
 		Header header = readHeader(reader);
 		lineNumber = 1;
 
+		if (batch != null) {
+			// Drop entries left over from a previous read that failed
+			batch.clear();
+		}
+
 		int version = header.version;
 
 		if (currentNamespace != null && !header.namespace.equals(currentNamespace)) {
@@ -92,51 +119,66 @@ public final class AccessWidenerReader {
 
 		while ((line = reader.readLine()) != null) {
 			lineNumber++;
+			readLine(line, version, delimiter);
+		}
 
-			line = handleComment(version, line);
+		flushBatch();
+	}
 
-			if (line.isEmpty()) {
-				continue;
-			}
+	/**
+	 * Reads a single entry line of an access widener in the given format version, as if it was at the given line.
+	 * Used to read entries on demand, after the header of the file has been read.
+	 */
+	void readLine(String line, int lineNumber, int version) {
+		this.lineNumber = lineNumber;
+		readLine(line, version, version < V2 ? V1_DELIMITER : V2_DELIMITER);
+		flushBatch();
+	}
 
-			if (Character.isWhitespace(line.codePointAt(0))) {
-				throw error("Leading whitespace is not allowed");
-			}
+	private void readLine(String line, int version, Pattern delimiter) {
+		line = handleComment(version, line);
+
+		if (line.isEmpty()) {
+			return;
+		}
 
-			// Note that this trims trailing spaces. See the docs of split for details.
-			List<String> tokens = Arrays.asList(delimiter.split(line));
+		if (Character.isWhitespace(line.codePointAt(0))) {
+			throw error("Leading whitespace is not allowed");
+		}
+
+		// Note that this trims trailing spaces. See the docs of split for details.
+		List<String> tokens = Arrays.asList(delimiter.split(line));
 
-			String accessType = tokens.get(0);
+		String accessType = tokens.get(0);
 
-			boolean transitive = false;
+		boolean transitive = false;
 
-			if (version >= V2) {
-				// transitive access widener flag
-				if (accessType.startsWith(TRANSITIVE_PREFIX)) {
-					accessType = accessType.substring(TRANSITIVE_PREFIX.length());
-					transitive = true;
-				}
+		if (version >= V2) {
+			// transitive access widener flag
+			if (accessType.startsWith(TRANSITIVE_PREFIX)) {
+				accessType = accessType.substring(TRANSITIVE_PREFIX.length());
+				transitive = true;
 			}
+		}
 
-			AccessType access = readAccessType(accessType);
+		AccessType access = readAccessType(accessType);
 
-			if (tokens.size() < 2) {
-				throw error("Expected <class|field|method> following " + tokens.get(0));
-			}
+		if (tokens.size() < 2) {
+			throw error("Expected <class|field|method> following " + tokens.get(0));
+		}
 
-			switch (tokens.get(1)) {
-			case "class":
-				handleClass(line, tokens, transitive, access);
-				break;
-			case "field":
-				handleField(line, tokens, transitive, access);
-				break;
-			case "method":
-				handleMethod(line, tokens, transitive, access);
-				break;
-			default:
-				throw error("Unsupported type: '" + tokens.get(1) + "'");
-			}
+		switch (tokens.get(1)) {
+		case "class":
+			handleClass(line, tokens, transitive, access);
+			break;
+		case "field":
+			handleField(line, tokens, transitive, access);
+			break;
+		case "method":
+			handleMethod(line, tokens, transitive, access);
+			break;
+		default:
+			throw error("Unsupported type: '" + tokens.get(1) + "'");
 		}
 	}
 
@@ -187,11 +229,7 @@ public final class AccessWidenerReader {
 		String name = tokens.get(2);
 		validateClassName(name);
 
-		try {
-			visitor.visitClass(name, access, transitive);
-		} catch (Exception e) {
-			throw error(e.toString());
-		}
+		visitEntry(EntryBatch.Kind.CLASS, name, null, null, access, transitive);
 	}
 
 	private void handleField(String line, List<String> tokens, boolean transitive, AccessType access) {
@@ -205,11 +243,7 @@ public final class AccessWidenerReader {
 
 		validateClassName(owner);
 
-		try {
-			visitor.visitField(owner, fieldName, descriptor, access, transitive);
-		} catch (Exception e) {
-			throw error(e.toString());
-		}
+		visitEntry(EntryBatch.Kind.FIELD, owner, fieldName, descriptor, access, transitive);
 	}
 
 	private void handleMethod(String line, List<String> tokens, boolean transitive, AccessType access) {
@@ -223,13 +257,55 @@ public final class AccessWidenerReader {
 
 		validateClassName(owner);
 
+		visitEntry(EntryBatch.Kind.METHOD, owner, methodName, descriptor, access, transitive);
+	}
+
+	private void visitEntry(EntryBatch.Kind kind, String owner, String name, String descriptor, AccessType access, boolean transitive) {
+		if (batch != null) {
+			if (batch.isEmpty()) {
+				batchLineNumber = lineNumber;
+			}
+
+			batch.add(kind, owner, name, descriptor, access, transitive);
+
+			if (batch.size() >= batchSize) {
+				flushBatch();
+			}
+
+			return;
+		}
+
 		try {
-			visitor.visitMethod(owner, methodName, descriptor, access, transitive);
+			switch (kind) {
+			case CLASS:
+				visitor.visitClass(owner, access, transitive);
+				break;
+			case METHOD:
+				visitor.visitMethod(owner, name, descriptor, access, transitive);
+				break;
+			case FIELD:
+				visitor.visitField(owner, name, descriptor, access, transitive);
+				break;
+			}
 		} catch (Exception e) {
 			throw error(e.toString());
 		}
 	}
 
+	private void flushBatch() {
+		if (batch == null || batch.isEmpty()) {
+			return;
+		}
+
+		try {
+			batch.forward(visitor);
+		} catch (Exception e) {
+			throw new AccessWidenerFormatException(batchLineNumber, e.toString());
+		} finally {
+			batch.clear();
+		}
+	}
+
 	private String handleComment(int version, String line) {
 		//Comment handling
 		int commentPos = line.indexOf('#');
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Stores remapped access widener files in a directory, so remapping the same file with the same mappings again
+ * doesn't require loading the mappings.
+ *
+ * <p>Results are looked up by a hash of the access widener file, the identity of the mappings, the namespaces and
+ * the output format. The directory can be shared between processes.
+ */
+public final class AccessWidenerRemapCache {
+	// Appended to the keys, must be changed whenever the output of AccessWidenerWriter changes
+	private static final String FORMAT_VERSION = "-1";
+
+	private final ContentStore store;
+
+	public AccessWidenerRemapCache(Path directory) {
+		this.store = new ContentStore(directory);
+	}
+
+	/**
+	 * Remaps an access widener file like {@link AccessWidenerRemapper} does, or returns the stored result of a
+	 * previous run.
+	 *
+	 * @param content          The content of the access widener file.
+	 * @param mappingsId       Identifies the mappings used for remapping, for example the hash of the mappings file.
+	 *                         It must change whenever the mappings change.
+	 * @param fromNamespace    The expected namespace of the access widener being remapped.
+	 * @param toNamespace      The namespace that the access widener will be remapped to.
+	 * @param remapperSupplier Provides the remapper for the mappings. Only called if there is no stored result.
+	 * @return the remapped access widener file, in the format version of the original
+	 */
+	public byte[] remap(byte[] content, String mappingsId, String fromNamespace, String toNamespace, Supplier<Remapper> remapperSupplier) {
+		String key = ContentStore.hash((ContentStore.hash(content) + '\n' + mappingsId + '\n' + fromNamespace + '\n' + toNamespace + FORMAT_VERSION)
+				.getBytes(StandardCharsets.UTF_8));
+		byte[] remapped;
+
+		try {
+			remapped = store.read(key);
+		} catch (IOException e) {
+			// Treat unreadable entries as missing, they will be overwritten with a fresh result
+			remapped = null;
+		}
+
+		if (remapped == null) {
+			remapped = AccessWidenerRemapper.remap(content, remapperSupplier.get(), fromNamespace, toNamespace);
+
+			try {
+				store.write(key, remapped);
+			} catch (IOException e) {
+				// The cache is only an optimization, failing to populate it mustn't fail remapping
+			}
+		}
+
+		return remapped;
+	}
+}
@@ -22,11 +22,12 @@ import org.objectweb.asm.commons.Remapper;
  * Decorates a {@link AccessWidenerVisitor} with a {@link Remapper}
  * to remap names passing through the visitor if they come from a different namespace.
  */
-public final class AccessWidenerRemapper implements AccessWidenerVisitor {
+public final class AccessWidenerRemapper implements AccessWidenerBatchVisitor {
 	private final AccessWidenerVisitor delegate;
 	private final String fromNamespace;
 	private final String toNamespace;
 	private final Remapper remapper;
+	private final EntryBatch remapped = new EntryBatch();
 
 	/**
 	 * @param delegate      The visitor to forward the remapped information to.
@@ -83,4 +84,50 @@ public final class AccessWidenerRemapper implements AccessWidenerVisitor {
 				transitive
 		);
 	}
+
+	@Override
+	public void visitBatch(EntryBatch batch) {
+		remapped.clear();
+
+		for (int i = 0; i < batch.size(); i++) {
+			String owner = batch.getOwner(i);
+			String name = batch.getName(i);
+			String descriptor = batch.getDescriptor(i);
+
+			switch (batch.getKind(i)) {
+			case CLASS:
+				remapped.addClass(remapper.map(owner), batch.getAccess(i), batch.isTransitive(i));
+				break;
+			case METHOD:
+				remapped.addMethod(
+						remapper.map(owner),
+						remapper.mapMethodName(owner, name, descriptor),
+						remapper.mapDesc(descriptor),
+						batch.getAccess(i),
+						batch.isTransitive(i)
+				);
+				break;
+			case FIELD:
+				remapped.addField(
+						remapper.map(owner),
+						remapper.mapFieldName(owner, name, descriptor),
+						remapper.mapDesc(descriptor),
+						batch.getAccess(i),
+						batch.isTransitive(i)
+				);
+				break;
+			}
+		}
+
+		remapped.forward(delegate);
+	}
+
+	/**
+	 * Remaps an access widener file, keeping its format version.
+	 */
+	static byte[] remap(byte[] content, Remapper remapper, String fromNamespace, String toNamespace) {
+		AccessWidenerWriter writer = new AccessWidenerWriter(AccessWidenerReader.readVersion(content));
+		new AccessWidenerReader(new AccessWidenerRemapper(writer, remapper, fromNamespace, toNamespace)).read(content);
+		return writer.write();
+	}
 }
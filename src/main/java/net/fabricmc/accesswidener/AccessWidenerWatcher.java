@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches access widener files and updates an {@link AccessWidener} when they change, for reloading them while
+ * the game is running.
+ *
+ * <p>Changes are collected until no further change happened for the debounce time, so saving several files at
+ * once causes a single update. Only the modified files are read again, and only their changed lines are applied,
+ * see {@link IncrementalAccessWidenerReader}. Deleting a file removes its entries.
+ *
+ * <p>The files are read into a private access widener on the watcher's worker. After every update, a copy of it is
+ * published, so the access widener returned by {@link #getAccessWidener()} never changes and can be used by any
+ * thread. Classes transformed with the previous access widener during an update are reported to the listeners
+ * afterwards, along with all other changed classes, so re-transforming the reported classes with the new access
+ * widener leaves them consistent.
+ */
+public final class AccessWidenerWatcher implements AutoCloseable {
+	private final IncrementalAccessWidenerReader reader;
+	private final WatchService watchService;
+	private final long debounceMillis;
+	private final Set<Path> files = new HashSet<>();
+	private final Set<Path> directories = new HashSet<>();
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private volatile AccessWidener accessWidener;
+
+	/**
+	 * @param executor         Runs the worker that waits for changes until {@link #close()} is called.
+	 * @param currentNamespace The namespace all files must be in, or null to only require them to be in the same
+	 *                         namespace.
+	 * @param debounceMillis   How long to wait for further changes before updating the access widener.
+	 */
+	public AccessWidenerWatcher(Executor executor, String currentNamespace, long debounceMillis) throws IOException {
+		this.reader = new IncrementalAccessWidenerReader(currentNamespace);
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.debounceMillis = debounceMillis;
+		this.accessWidener = reader.getAccessWidener().copy();
+		executor.execute(this::run);
+	}
+
+	/**
+	 * Returns the rules of all files as of the last update. The returned access widener must not be changed.
+	 */
+	public AccessWidener getAccessWidener() {
+		return accessWidener;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Reads a file and watches it for changes from now on.
+	 *
+	 * @return the class-file internal binary names of the classes the file changed
+	 * @throws AccessWidenerFormatException if the file can't be read
+	 */
+	public synchronized Set<String> watch(Path file) throws IOException {
+		file = file.toAbsolutePath().normalize();
+		Set<String> changed = reader.read(file.toString(), Files.readAllBytes(file));
+		files.add(file);
+		accessWidener = reader.getAccessWidener().copy();
+
+		if (directories.add(file.getParent())) {
+			file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Stops watching the files. The access widener keeps its current entries.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				Set<Path> modified = new LinkedHashSet<>();
+				WatchKey key = watchService.take();
+
+				// Wait until the changes settle
+				while (key != null) {
+					collect(key, modified);
+					key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+				}
+
+				update(modified);
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Closed
+		}
+	}
+
+	private synchronized void collect(WatchKey key, Set<Path> modified) {
+		Path directory = (Path) key.watchable();
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				// Events were lost, check all files of the directory
+				for (Path file : files) {
+					if (file.getParent().equals(directory)) {
+						modified.add(file);
+					}
+				}
+			} else {
+				Path file = directory.resolve((Path) event.context());
+
+				if (files.contains(file)) {
+					modified.add(file);
+				}
+			}
+		}
+
+		key.reset();
+	}
+
+	private void update(Set<Path> modified) {
+		Set<String> changed = new LinkedHashSet<>();
+
+		synchronized (this) {
+			for (Path file : modified) {
+				try {
+					changed.addAll(reader.read(file.toString(), Files.readAllBytes(file)));
+				} catch (NoSuchFileException e) {
+					changed.addAll(reader.remove(file.toString()));
+				} catch (IOException | RuntimeException e) {
+					// Keeps the previous version of the file until it is fixed
+					for (Listener listener : listeners) {
+						reportError(listener, file, e);
+					}
+				}
+			}
+
+			if (!changed.isEmpty()) {
+				accessWidener = reader.getAccessWidener().copy();
+			}
+		}
+
+		if (!changed.isEmpty()) {
+			Set<String> classes = Collections.unmodifiableSet(changed);
+
+			for (Listener listener : listeners) {
+				try {
+					listener.onChange(classes);
+				} catch (RuntimeException e) {
+					// Keep watching, the other listeners and later changes aren't affected
+					reportError(listener, null, e);
+				}
+			}
+		}
+	}
+
+	private static void reportError(Listener listener, Path file, Exception e) {
+		try {
+			listener.onError(file, e);
+		} catch (RuntimeException ignored) {
+			// Nowhere left to report it, but the watcher must keep running
+		}
+	}
+
+	public interface Listener {
+		/**
+		 * Called on the watcher's worker after an update.
+		 *
+		 * @param classes the class-file internal binary names of the classes whose transformation changed
+		 */
+		void onChange(Set<String> classes);
+
+		/**
+		 * Called on the watcher's worker if a modified file can't be read, in which case the previous version of the
+		 * file stays in effect, or if {@link #onChange} of this listener threw.
+		 *
+		 * @param file the file that can't be read, or null if {@link #onChange} threw
+		 */
+		default void onError(Path file, Exception e) {
+		}
+	}
+}
@@ -16,16 +16,35 @@
 
 package net.fabricmc.accesswidener;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
 public final class AccessWidenerWriter implements AccessWidenerVisitor {
-	private final StringBuilder builder = new StringBuilder();
+	private static final int STREAM_BUFFER_SIZE = 8192;
+
+	private final StringBuilder builder;
+	private final Writer output;
 	private final int version;
 	private String namespace;
+	private Map<String, Entry> entries;
+	// Set once the entries of a canonical streaming writer have been written
+	private boolean flushed;
 
 	/**
 	 * Constructs a writer that writes an access widener in the given version.
 	 * If features not supported by the version are used, an exception is thrown.
 	 */
 	public AccessWidenerWriter(int version) {
+		this.builder = new StringBuilder();
+		this.output = null;
 		this.version = version;
 	}
 
@@ -36,14 +55,62 @@ public final class AccessWidenerWriter implements AccessWidenerVisitor {
 		this(2); // Latest version
 	}
 
+	/**
+	 * Constructs a writer that streams an access widener in the given version to a {@link Writer}, instead of
+	 * collecting it in memory.
+	 *
+	 * <p>Output is buffered, call {@link #flush()} once all entries have been visited. The writer is not closed.
+	 */
+	public AccessWidenerWriter(int version, Writer output) {
+		this.builder = null;
+		this.output = output instanceof BufferedWriter ? output : new BufferedWriter(output, STREAM_BUFFER_SIZE);
+		this.version = version;
+	}
+
+	/**
+	 * Constructs a writer that streams an access widener in the given version to an {@link OutputStream} as UTF-8.
+	 *
+	 * <p>Output is buffered, call {@link #flush()} once all entries have been visited. The stream is not closed.
+	 */
+	public AccessWidenerWriter(int version, OutputStream output) {
+		this(version, new OutputStreamWriter(output, AccessWidenerReader.ENCODING));
+	}
+
+	/**
+	 * Constructs a writer that streams an access widener in the given version to a channel as UTF-8.
+	 *
+	 * <p>Output is buffered, call {@link #flush()} once all entries have been visited. The channel is not closed.
+	 */
+	public AccessWidenerWriter(int version, WritableByteChannel output) {
+		this(version, Channels.newWriter(output, AccessWidenerReader.ENCODING.newEncoder(), STREAM_BUFFER_SIZE));
+	}
+
+	/**
+	 * Switches the writer to canonical output. Entries are merged the same way {@link AccessWidener} merges them,
+	 * dropping duplicate and subsumed lines, and written sorted by owner, kind, name and descriptor once the
+	 * output is requested. Classes that are extendable are made public as well, so they have no accessible line.
+	 * The same rules always produce the same bytes, regardless of the order they were visited in.
+	 *
+	 * <p>Must be called before any entries are visited. A canonical streaming writer can only be flushed once, since
+	 * entries visited afterwards couldn't be sorted into the output anymore.
+	 */
+	public AccessWidenerWriter canonicalize() {
+		if (namespace != null) {
+			throw new IllegalStateException("The writer must be made canonical before visiting any entries");
+		}
+
+		entries = new TreeMap<>();
+		return this;
+	}
+
 	@Override
 	public void visitHeader(String namespace) {
 		if (this.namespace == null) {
-			builder.append("accessWidener\tv")
-					.append(version)
-					.append('\t')
-					.append(namespace)
-					.append('\n');
+			append("accessWidener\tv");
+			append(Integer.toString(version));
+			append("\t");
+			append(namespace);
+			append("\n");
 		} else if (!this.namespace.equals(namespace)) {
 			throw new IllegalArgumentException("Cannot write different namespaces to the same file ("
 					+ this.namespace + " != " + namespace + ")");
@@ -54,22 +121,37 @@ public final class AccessWidenerWriter implements AccessWidenerVisitor {
 
 	@Override
 	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (entries != null) {
+			addEntry(Kind.CLASS, name, "", "", access, transitive);
+			return;
+		}
+
 		writeAccess(access, transitive);
-		builder.append("\tclass\t").append(name).append('\n');
+		append("\tclass\t");
+		append(name);
+		append("\n");
 	}
 
 	@Override
 	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (entries != null) {
+			addEntry(Kind.METHOD, owner, name, descriptor, access, transitive);
+			return;
+		}
+
 		writeAccess(access, transitive);
-		builder.append("\tmethod\t").append(owner).append('\t').append(name)
-				.append('\t').append(descriptor).append('\n');
+		writeMember("\tmethod\t", owner, name, descriptor);
 	}
 
 	@Override
 	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (entries != null) {
+			addEntry(Kind.FIELD, owner, name, descriptor, access, transitive);
+			return;
+		}
+
 		writeAccess(access, transitive);
-		builder.append("\tfield\t").append(owner).append('\t').append(name)
-				.append('\t').append(descriptor).append('\n');
+		writeMember("\tfield\t", owner, name, descriptor);
 	}
 
 	public byte[] write() {
@@ -77,22 +159,190 @@ public final class AccessWidenerWriter implements AccessWidenerVisitor {
 	}
 
 	public String writeString() {
+		if (builder == null) {
+			throw new IllegalStateException("The access widener has been streamed to the output. Use flush() instead.");
+		}
+
+		checkNamespace();
+
+		if (entries == null) {
+			return builder.toString();
+		}
+
+		// Entries stay buffered, so more can still be visited after the output has been requested
+		int length = builder.length();
+		writeEntries();
+		String result = builder.toString();
+		builder.setLength(length);
+		return result;
+	}
+
+	/**
+	 * Writes all buffered output of a streaming writer to its output.
+	 *
+	 * @throws IllegalStateException if the writer is {@linkplain #canonicalize() canonical} and was flushed before
+	 */
+	public void flush() {
+		if (output == null) {
+			throw new IllegalStateException("The access widener is collected in memory. Use write() instead.");
+		}
+
+		checkNamespace();
+
+		if (entries != null) {
+			checkNotFlushed();
+			writeEntries();
+			entries.clear();
+			flushed = true;
+		}
+
+		try {
+			output.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void checkNamespace() {
 		if (namespace == null) {
 			throw new IllegalStateException("No namespace set. visitHeader wasn't called.");
 		}
+	}
+
+	private void checkNotFlushed() {
+		if (flushed) {
+			// A second sorted block would repeat owners, so the output wouldn't be canonical anymore
+			throw new IllegalStateException("The canonical access widener has already been flushed");
+		}
+	}
 
-		return builder.toString();
+	private void checkTransitive(boolean transitive) {
+		if (transitive && version < 2) {
+			throw new IllegalStateException("Cannot write transitive rule in version " + version);
+		}
 	}
 
 	private void writeAccess(AccessWidenerReader.AccessType access, boolean transitive) {
+		checkTransitive(transitive);
+
+		if (transitive) {
+			append("transitive-");
+		}
+
+		append(access.toString());
+	}
+
+	private void addEntry(Kind kind, String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		checkNotFlushed();
+		checkTransitive(transitive);
+
+		// The tab sorts before any character allowed in names, so owners sort before their inner classes
+		String key = owner + '\t' + kind.ordinal() + '\t' + name + '\t' + descriptor;
+		Entry entry = entries.computeIfAbsent(key, k -> new Entry(kind, owner, name, descriptor));
+		entry.access = AccessWidener.applyAccess(access, entry.access);
+
 		if (transitive) {
-			if (version < 2) {
-				throw new IllegalStateException("Cannot write transitive rule in version " + version);
+			entry.transitiveAccess = AccessWidener.applyAccess(access, entry.transitiveAccess);
+		}
+	}
+
+	private void writeEntries() {
+		for (Entry entry : entries.values()) {
+			// Transitive lines first, local lines only for what they don't already grant
+			for (AccessWidenerReader.AccessType type : entry.kind.accessTypes) {
+				if (grants(entry.transitiveAccess, type) && !isImplied(entry.kind, entry.transitiveAccess, type)) {
+					writeEntry(entry, type, true);
+				}
 			}
 
-			builder.append("transitive-");
+			for (AccessWidenerReader.AccessType type : entry.kind.accessTypes) {
+				if (grants(entry.access, type) && !grants(entry.transitiveAccess, type) && !isImplied(entry.kind, entry.access, type)) {
+					writeEntry(entry, type, false);
+				}
+			}
 		}
+	}
+
+	private static boolean grants(AccessWidener.Access access, AccessWidenerReader.AccessType type) {
+		return AccessWidener.applyAccess(type, access) == access;
+	}
 
-		builder.append(access);
+	/**
+	 * Returns whether another access type of the access already has the same effect as the given one.
+	 */
+	private static boolean isImplied(Kind kind, AccessWidener.Access access, AccessWidenerReader.AccessType type) {
+		// Extendable classes are made public as well
+		return kind == Kind.CLASS && type == AccessWidenerReader.AccessType.ACCESSIBLE
+				&& grants(access, AccessWidenerReader.AccessType.EXTENDABLE);
+	}
+
+	private void writeEntry(Entry entry, AccessWidenerReader.AccessType access, boolean transitive) {
+		writeAccess(access, transitive);
+
+		if (entry.kind == Kind.CLASS) {
+			append("\tclass\t");
+			append(entry.owner);
+			append("\n");
+		} else {
+			writeMember(entry.kind.prefix, entry.owner, entry.name, entry.descriptor);
+		}
+	}
+
+	private void writeMember(String kind, String owner, String name, String descriptor) {
+		append(kind);
+		append(owner);
+		append("\t");
+		append(name);
+		append("\t");
+		append(descriptor);
+		append("\n");
+	}
+
+	private void append(String str) {
+		if (builder != null) {
+			builder.append(str);
+			return;
+		}
+
+		try {
+			output.write(str);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private enum Kind {
+		// Declaration order is the order entries of the same owner are written in
+		CLASS("\tclass\t", AccessWidener.ClassAccess.DEFAULT, AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.EXTENDABLE),
+		METHOD("\tmethod\t", AccessWidener.MethodAccess.DEFAULT, AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.EXTENDABLE),
+		FIELD("\tfield\t", AccessWidener.FieldAccess.DEFAULT, AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.MUTABLE);
+
+		final String prefix;
+		final AccessWidener.Access defaultAccess;
+		final AccessWidenerReader.AccessType[] accessTypes;
+
+		Kind(String prefix, AccessWidener.Access defaultAccess, AccessWidenerReader.AccessType... accessTypes) {
+			this.prefix = prefix;
+			this.defaultAccess = defaultAccess;
+			this.accessTypes = accessTypes;
+		}
+	}
+
+	private static final class Entry {
+		final Kind kind;
+		final String owner;
+		final String name;
+		final String descriptor;
+		AccessWidener.Access access;
+		AccessWidener.Access transitiveAccess;
+
+		Entry(Kind kind, String owner, String name, String descriptor) {
+			this.kind = kind;
+			this.owner = owner;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.access = kind.defaultAccess;
+			this.transitiveAccess = kind.defaultAccess;
+		}
 	}
 }
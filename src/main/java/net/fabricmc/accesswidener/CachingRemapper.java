@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Decorates a {@link Remapper} to remember the names it returned for class names, descriptors and member names.
+ *
+ * <p>Access wideners refer to the same classes and descriptors over and over, so remapping them with this
+ * decorator only asks the delegate once for every distinct name. All other names are forwarded to the delegate
+ * without caching. The cache is safe to use from multiple threads if the delegate is.
+ */
+public final class CachingRemapper extends Remapper {
+	// ConcurrentHashMap doesn't support null values, which remappers may return for unmapped names
+	private static final String NULL = new String();
+
+	private final Remapper delegate;
+	private final ConcurrentHashMap<String, String> classNames = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, String> descriptors = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, String> methodDescriptors = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<EntryTriple, String> methodNames = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<EntryTriple, String> fieldNames = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public CachingRemapper(Remapper delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String map(String internalName) {
+		return lookup(classNames, internalName, delegate::map);
+	}
+
+	@Override
+	public String mapDesc(String descriptor) {
+		return lookup(descriptors, descriptor, delegate::mapDesc);
+	}
+
+	@Override
+	public String mapMethodDesc(String methodDescriptor) {
+		return lookup(methodDescriptors, methodDescriptor, delegate::mapMethodDesc);
+	}
+
+	@Override
+	public String mapMethodName(String owner, String name, String descriptor) {
+		return lookup(methodNames, new EntryTriple(owner, name, descriptor), k -> delegate.mapMethodName(owner, name, descriptor));
+	}
+
+	@Override
+	public String mapFieldName(String owner, String name, String descriptor) {
+		return lookup(fieldNames, new EntryTriple(owner, name, descriptor), k -> delegate.mapFieldName(owner, name, descriptor));
+	}
+
+	@Override
+	public Object mapValue(Object value) {
+		return delegate.mapValue(value);
+	}
+
+	@Override
+	public String mapSignature(String signature, boolean typeSignature) {
+		return delegate.mapSignature(signature, typeSignature);
+	}
+
+	@Override
+	public String mapAnnotationAttributeName(String descriptor, String name) {
+		return delegate.mapAnnotationAttributeName(descriptor, name);
+	}
+
+	@Override
+	public String mapInnerClassName(String name, String ownerName, String innerName) {
+		return delegate.mapInnerClassName(name, ownerName, innerName);
+	}
+
+	@Override
+	public String mapInvokeDynamicMethodName(String name, String descriptor) {
+		return delegate.mapInvokeDynamicMethodName(name, descriptor);
+	}
+
+	@Override
+	public String mapRecordComponentName(String owner, String name, String descriptor) {
+		return delegate.mapRecordComponentName(owner, name, descriptor);
+	}
+
+	@Override
+	public String mapPackageName(String name) {
+		return delegate.mapPackageName(name);
+	}
+
+	@Override
+	public String mapModuleName(String name) {
+		return delegate.mapModuleName(name);
+	}
+
+	/**
+	 * The number of lookups that were answered from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * The number of lookups that had to be forwarded to the delegate.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * The share of lookups that were answered from the cache, between 0 and 1.
+	 */
+	public double getHitRate() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	private <K> String lookup(ConcurrentHashMap<K, String> cache, K key, Function<K, String> mapper) {
+		String result = cache.get(key);
+
+		if (result != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+			result = cache.computeIfAbsent(key, k -> {
+				String mapped = mapper.apply(k);
+				return mapped != null ? mapped : NULL;
+			});
+		}
+
+		return result != NULL ? result : null;
+	}
+}
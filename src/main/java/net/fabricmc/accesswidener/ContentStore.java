@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A directory of immutable files that are addressed by a hash of the inputs they were computed from.
+ *
+ * <p>Files are written to a temporary file first and then moved into place, so multiple processes can safely share
+ * the same directory.
+ */
+final class ContentStore {
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Path directory;
+
+	ContentStore(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the SHA-256 hash of the given data as a hex string.
+	 */
+	static String hash(byte[] data) {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+
+		return toHex(digest.digest(data));
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >>> 4) & 0xf];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Reads the file stored under the given key through a memory mapping.
+	 *
+	 * @return the content of the file, or null if there is no file for the key
+	 */
+	byte[] read(String key) throws IOException {
+		try (FileChannel channel = FileChannel.open(getPath(key), StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Cached file for " + key + " is too large: " + size);
+			}
+
+			byte[] content = new byte[(int) size];
+
+			if (size > 0) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				buffer.get(content);
+			}
+
+			return content;
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	void write(String key, byte[] content) throws IOException {
+		Path path = getPath(key);
+		Files.createDirectories(path.getParent());
+		Path tempPath = Files.createTempFile(path.getParent(), key, ".tmp");
+
+		try {
+			Files.write(tempPath, content);
+
+			try {
+				Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private Path getPath(String key) {
+		// Spread the files over subdirectories to keep directory sizes manageable
+		return directory.resolve(key.substring(0, 2)).resolve(key);
+	}
+}
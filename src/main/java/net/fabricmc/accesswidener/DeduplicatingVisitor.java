@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decorates a visitor to drop entries that don't add anything to the entries it has already received.
+ *
+ * <p>An entry is dropped if an earlier entry for the same class, method or field already granted its access, as
+ * {@link AccessWidener} would merge them. A transitive entry is only dropped if the access was granted
+ * transitively. Headers are always forwarded.
+ */
+public final class DeduplicatingVisitor implements AccessWidenerBatchVisitor {
+	// The seen access is packed into a single byte: the ordinal of the merged access of all entries in the low bits,
+	// and the ordinal of the merged access of the transitive entries in the high bits. Boxed bytes are all cached.
+	private static final int TRANSITIVE_SHIFT = 4;
+	private static final int ACCESS_MASK = (1 << TRANSITIVE_SHIFT) - 1;
+	private static final AccessWidener.Access[] CLASS_ACCESS = AccessWidener.ClassAccess.values();
+	private static final AccessWidener.Access[] METHOD_ACCESS = AccessWidener.MethodAccess.values();
+	private static final AccessWidener.Access[] FIELD_ACCESS = AccessWidener.FieldAccess.values();
+
+	private final AccessWidenerVisitor delegate;
+	private final Map<String, Byte> classes = new HashMap<>();
+	private final Map<EntryTriple, Byte> methods = new HashMap<>();
+	private final Map<EntryTriple, Byte> fields = new HashMap<>();
+	private final EntryBatch filtered = new EntryBatch();
+
+	public DeduplicatingVisitor(AccessWidenerVisitor delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		delegate.visitHeader(namespace);
+	}
+
+	@Override
+	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (add(classes, name, CLASS_ACCESS, access, transitive)) {
+			delegate.visitClass(name, access, transitive);
+		}
+	}
+
+	@Override
+	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (add(methods, new EntryTriple(owner, name, descriptor), METHOD_ACCESS, access, transitive)) {
+			delegate.visitMethod(owner, name, descriptor, access, transitive);
+		}
+	}
+
+	@Override
+	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (add(fields, new EntryTriple(owner, name, descriptor), FIELD_ACCESS, access, transitive)) {
+			delegate.visitField(owner, name, descriptor, access, transitive);
+		}
+	}
+
+	@Override
+	public void visitBatch(EntryBatch batch) {
+		filtered.clear();
+
+		for (int i = 0; i < batch.size(); i++) {
+			String owner = batch.getOwner(i);
+			String name = batch.getName(i);
+			String descriptor = batch.getDescriptor(i);
+			AccessWidenerReader.AccessType access = batch.getAccess(i);
+			boolean transitive = batch.isTransitive(i);
+			boolean added;
+
+			switch (batch.getKind(i)) {
+			case CLASS:
+				added = add(classes, owner, CLASS_ACCESS, access, transitive);
+				break;
+			case METHOD:
+				added = add(methods, new EntryTriple(owner, name, descriptor), METHOD_ACCESS, access, transitive);
+				break;
+			default:
+				added = add(fields, new EntryTriple(owner, name, descriptor), FIELD_ACCESS, access, transitive);
+				break;
+			}
+
+			if (added) {
+				filtered.add(batch.getKind(i), owner, name, descriptor, access, transitive);
+			}
+		}
+
+		if (!filtered.isEmpty()) {
+			filtered.forward(delegate);
+		}
+	}
+
+	/**
+	 * @param values the access values of the entry's kind, in ordinal order. Their first value is the default access.
+	 * @return whether the entry grants anything that wasn't granted before
+	 */
+	private static <K> boolean add(Map<K, Byte> seen, K key, AccessWidener.Access[] values, AccessWidenerReader.AccessType access, boolean transitive) {
+		Byte packed = seen.get(key);
+		int packedValue = packed != null ? packed : 0;
+		AccessWidener.Access all = values[packedValue & ACCESS_MASK];
+		AccessWidener.Access transitiveAccess = values[packedValue >>> TRANSITIVE_SHIFT];
+
+		AccessWidener.Access newAll = AccessWidener.applyAccess(access, all);
+		AccessWidener.Access newTransitive = transitive ? AccessWidener.applyAccess(access, transitiveAccess) : transitiveAccess;
+
+		if (newAll == all && newTransitive == transitiveAccess) {
+			return false;
+		}
+
+		seen.put(key, (byte) (((Enum<?>) newAll).ordinal() | ((Enum<?>) newTransitive).ordinal() << TRANSITIVE_SHIFT));
+		return true;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.Arrays;
+
+/**
+ * A block of access widener entries, stored in columns, that is passed to an {@link AccessWidenerBatchVisitor} in
+ * a single call.
+ *
+ * <p>Batches are reused by their producers. A visitor must not keep a batch after {@code visitBatch} returns.
+ */
+public final class EntryBatch {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private Kind[] kinds;
+	private String[] owners;
+	private String[] names;
+	private String[] descriptors;
+	private AccessWidenerReader.AccessType[] accessTypes;
+	private boolean[] transitive;
+	private int size;
+
+	public EntryBatch() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public EntryBatch(int capacity) {
+		capacity = Math.max(capacity, 1);
+		kinds = new Kind[capacity];
+		owners = new String[capacity];
+		names = new String[capacity];
+		descriptors = new String[capacity];
+		accessTypes = new AccessWidenerReader.AccessType[capacity];
+		transitive = new boolean[capacity];
+	}
+
+	public void addClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		add(Kind.CLASS, name, null, null, access, transitive);
+	}
+
+	public void addMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		add(Kind.METHOD, owner, name, descriptor, access, transitive);
+	}
+
+	public void addField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		add(Kind.FIELD, owner, name, descriptor, access, transitive);
+	}
+
+	/**
+	 * Adds an entry.
+	 *
+	 * @param owner the name of the class for class entries, or the name of the containing class otherwise
+	 * @param name  the name of the member, or null for class entries
+	 */
+	public void add(Kind kind, String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+			names = Arrays.copyOf(names, capacity);
+			descriptors = Arrays.copyOf(descriptors, capacity);
+			accessTypes = Arrays.copyOf(accessTypes, capacity);
+			this.transitive = Arrays.copyOf(this.transitive, capacity);
+		}
+
+		kinds[size] = kind;
+		owners[size] = owner;
+		names[size] = name;
+		descriptors[size] = descriptor;
+		accessTypes[size] = access;
+		this.transitive[size] = transitive;
+		size++;
+	}
+
+	/**
+	 * Removes all entries, keeping the allocated capacity.
+	 */
+	public void clear() {
+		Arrays.fill(owners, 0, size, null);
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(descriptors, 0, size, null);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Kind getKind(int index) {
+		return kinds[index];
+	}
+
+	/**
+	 * @return the name of the class for class entries, or the name of the containing class otherwise
+	 */
+	public String getOwner(int index) {
+		return owners[index];
+	}
+
+	/**
+	 * @return the name of the member, or null for class entries
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return the descriptor of the member, or null for class entries
+	 */
+	public String getDescriptor(int index) {
+		return descriptors[index];
+	}
+
+	public AccessWidenerReader.AccessType getAccess(int index) {
+		return accessTypes[index];
+	}
+
+	public boolean isTransitive(int index) {
+		return transitive[index];
+	}
+
+	/**
+	 * Passes the entries to the visitor one by one.
+	 */
+	public void accept(AccessWidenerVisitor visitor) {
+		for (int i = 0; i < size; i++) {
+			switch (kinds[i]) {
+			case CLASS:
+				visitor.visitClass(owners[i], accessTypes[i], transitive[i]);
+				break;
+			case METHOD:
+				visitor.visitMethod(owners[i], names[i], descriptors[i], accessTypes[i], transitive[i]);
+				break;
+			case FIELD:
+				visitor.visitField(owners[i], names[i], descriptors[i], accessTypes[i], transitive[i]);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Passes the batch to the visitor, as a whole if it is an {@link AccessWidenerBatchVisitor}, or entry by entry
+	 * otherwise.
+	 */
+	public void forward(AccessWidenerVisitor visitor) {
+		if (visitor instanceof AccessWidenerBatchVisitor) {
+			((AccessWidenerBatchVisitor) visitor).visitBatch(this);
+		} else {
+			accept(visitor);
+		}
+	}
+
+	public enum Kind {
+		CLASS,
+		METHOD,
+		FIELD
+	}
+}
@@ -19,7 +19,7 @@ package net.fabricmc.accesswidener;
 /**
  * Forwards visitor events to multiple other visitors.
  */
-public class ForwardingVisitor implements AccessWidenerVisitor {
+public class ForwardingVisitor implements AccessWidenerBatchVisitor {
 	private final AccessWidenerVisitor[] visitors;
 
 	public ForwardingVisitor(AccessWidenerVisitor... visitors) {
@@ -53,4 +53,17 @@ public class ForwardingVisitor implements AccessWidenerVisitor {
 			visitor.visitField(owner, name, descriptor, access, transitive);
 		}
 	}
+
+	@Override
+	public void visitBatch(EntryBatch batch) {
+		if (getClass() != ForwardingVisitor.class) {
+			// Subclasses may override the methods for single entries, which must see every entry
+			batch.accept(this);
+			return;
+		}
+
+		for (AccessWidenerVisitor visitor : visitors) {
+			batch.forward(visitor);
+		}
+	}
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads access widener files into an {@link AccessWidener}, and updates it when the files change by only applying
+ * the lines that were added or removed.
+ *
+ * <p>The access widener is owned by this reader and must not be visited by anything else. Each file is identified
+ * by an id. Reading a file with an id that was read before replaces the previous version of that file.
+ */
+public final class IncrementalAccessWidenerReader {
+	private final String currentNamespace;
+	private final AccessWidener accessWidener = new AccessWidener();
+	private final Map<String, Source> sources = new HashMap<>();
+	// The number of entries granting each access type, by ordinal. For classes, this includes the access granted
+	// to them by entries of their members.
+	private final Map<String, int[]> classContributions = new HashMap<>();
+	private final Map<EntryTriple, int[]> methodContributions = new HashMap<>();
+	private final Map<EntryTriple, int[]> fieldContributions = new HashMap<>();
+	// The number of entries for each class, and the number of targeted classes nested in each class or itself
+	private final Map<String, Integer> ownerEntries = new HashMap<>();
+	private final Map<String, Integer> targetReferences = new HashMap<>();
+
+	/**
+	 * @param currentNamespace The namespace all files must be in, or null to only require them to be in the same
+	 *                         namespace.
+	 */
+	public IncrementalAccessWidenerReader(String currentNamespace) {
+		this.currentNamespace = currentNamespace;
+	}
+
+	public AccessWidener getAccessWidener() {
+		return accessWidener;
+	}
+
+	/**
+	 * Reads a file, or applies the changes to a file that was read before.
+	 *
+	 * <p>If the file can't be read, the access widener is left unchanged.
+	 *
+	 * @param id      identifies the file
+	 * @param content the current content of the file
+	 * @return the class-file internal binary names of the classes whose transformation changed
+	 * @throws AccessWidenerFormatException if the file can't be read
+	 */
+	public Set<String> read(String id, byte[] content) {
+		AccessWidenerReader.Header header = AccessWidenerReader.readHeader(content);
+
+		if (currentNamespace != null && !header.getNamespace().equals(currentNamespace)) {
+			throw new AccessWidenerFormatException(1, String.format("Namespace (%s) does not match current runtime namespace (%s)",
+					header.getNamespace(), currentNamespace));
+		}
+
+		Source old = sources.get(id);
+		// Lines may have a different meaning in another version, so all of them are read again in that case
+		Source previous = old != null && old.version == header.getVersion() ? old : null;
+
+		Source source = new Source(header.getVersion());
+		Map<String, Integer> firstLineNumbers = new HashMap<>();
+
+		try (BufferedReader reader = new BufferedReader(new StringReader(new String(content, AccessWidenerReader.ENCODING)))) {
+			reader.readLine();
+			String line;
+			int lineNumber = 1;
+
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				firstLineNumbers.putIfAbsent(line, lineNumber);
+				source.lines.computeIfAbsent(line, l -> new Line()).count++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// Parse all new lines before changing anything, so a failure leaves the access widener as it was
+		EntryCollector collector = new EntryCollector();
+		AccessWidenerReader lineReader = new AccessWidenerReader(collector);
+
+		for (Map.Entry<String, Line> entry : source.lines.entrySet()) {
+			Line previousLine = previous != null ? previous.lines.get(entry.getKey()) : null;
+
+			if (previousLine != null) {
+				entry.getValue().entries = previousLine.entries;
+			} else {
+				collector.entries = new ArrayList<>(1);
+				lineReader.readLine(entry.getKey(), firstLineNumbers.get(entry.getKey()), header.getVersion());
+				entry.getValue().entries = collector.entries;
+			}
+		}
+
+		accessWidener.visitHeader(header.getNamespace());
+		Set<String> changed = new LinkedHashSet<>();
+
+		if (old != null) {
+			apply(old, previous != null ? source : null, -1, changed);
+		}
+
+		apply(source, previous, 1, changed);
+		sources.put(id, source);
+		return changed;
+	}
+
+	/**
+	 * Removes all entries of a file that was read before.
+	 *
+	 * @return the class-file internal binary names of the classes whose transformation changed
+	 */
+	public Set<String> remove(String id) {
+		Set<String> changed = new LinkedHashSet<>();
+		Source source = sources.remove(id);
+
+		if (source != null) {
+			apply(source, null, -1, changed);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Adds or removes the entries of the lines that occur more often in the source than in the other source.
+	 */
+	private void apply(Source source, Source other, int delta, Set<String> changed) {
+		for (Map.Entry<String, Line> entry : source.lines.entrySet()) {
+			Line otherLine = other != null ? other.lines.get(entry.getKey()) : null;
+			int count = entry.getValue().count - (otherLine != null ? otherLine.count : 0);
+
+			for (int i = 0; i < count; i++) {
+				for (Entry e : entry.getValue().entries) {
+					apply(e, delta, changed);
+				}
+			}
+		}
+	}
+
+	private void apply(Entry entry, int delta, Set<String> changed) {
+		switch (entry.kind) {
+		case CLASS:
+			updateClass(entry.owner, entry.access, delta, changed);
+			break;
+		case METHOD:
+			updateMember(RuleFingerprint.METHOD, methodContributions, accessWidener.methodAccess, entry, AccessWidener.MethodAccess.DEFAULT, delta, changed);
+			break;
+		case FIELD:
+			updateMember(RuleFingerprint.FIELD, fieldContributions, accessWidener.fieldAccess, entry, AccessWidener.FieldAccess.DEFAULT, delta, changed);
+			break;
+		}
+
+		int entries = ownerEntries.merge(entry.owner, delta, Integer::sum);
+
+		if (entries == 0) {
+			ownerEntries.remove(entry.owner);
+			updateTargets(entry.owner, -1);
+		} else if (entries == delta) {
+			updateTargets(entry.owner, 1);
+		}
+	}
+
+	private void updateClass(String name, AccessWidenerReader.AccessType access, int delta, Set<String> changed) {
+		AccessWidener.Access newAccess = update(classContributions, name, access, delta, AccessWidener.ClassAccess.DEFAULT);
+
+		if (newAccess != accessWidener.classAccess.getOrDefault(name, AccessWidener.ClassAccess.DEFAULT)) {
+			accessWidener.putClassAccess(name, newAccess);
+			changed.add(name);
+
+			// The access of nested classes is also applied to the inner class attributes of all outer classes
+			while (name.contains("$")) {
+				name = name.substring(0, name.lastIndexOf("$"));
+				changed.add(name);
+			}
+		}
+	}
+
+	private void updateMember(char kind, Map<EntryTriple, int[]> contributions, Map<EntryTriple, AccessWidener.Access> memberAccess,
+			Entry entry, AccessWidener.Access defaultAccess, int delta, Set<String> changed) {
+		EntryTriple member = new EntryTriple(entry.owner, entry.name, entry.descriptor);
+		AccessWidener.Access newAccess = update(contributions, member, entry.access, delta, defaultAccess);
+
+		if (newAccess != memberAccess.getOrDefault(member, defaultAccess)) {
+			accessWidener.putMemberAccess(kind, memberAccess, member, newAccess, defaultAccess);
+			changed.add(entry.owner);
+		}
+
+		if (entry.access != AccessWidenerReader.AccessType.MUTABLE) {
+			// Members that are made accessible or extendable make their class accessible or extendable as well
+			updateClass(entry.owner, entry.access, delta, changed);
+		}
+	}
+
+	/**
+	 * Updates the contributions to a key and returns the access they grant together.
+	 */
+	private static <K> AccessWidener.Access update(Map<K, int[]> contributions, K key, AccessWidenerReader.AccessType access, int delta,
+			AccessWidener.Access defaultAccess) {
+		int[] counts = contributions.computeIfAbsent(key, k -> new int[AccessWidenerReader.AccessType.values().length]);
+		counts[access.ordinal()] += delta;
+		AccessWidener.Access result = defaultAccess;
+		boolean empty = true;
+
+		for (AccessWidenerReader.AccessType type : AccessWidenerReader.AccessType.values()) {
+			if (counts[type.ordinal()] > 0) {
+				result = AccessWidener.applyAccess(type, result);
+				empty = false;
+			}
+		}
+
+		if (empty) {
+			contributions.remove(key);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds or removes a class and its outer classes from the targets, once no class nested in them is targeted.
+	 */
+	private void updateTargets(String owner, int delta) {
+		if (delta > 0) {
+			accessWidener.addTargets(owner);
+		}
+
+		String clazz = owner;
+
+		while (true) {
+			if (targetReferences.merge(clazz, delta, Integer::sum) == 0) {
+				targetReferences.remove(clazz);
+				accessWidener.removeTarget(clazz);
+			}
+
+			int nestedSeparator = clazz.lastIndexOf('$');
+
+			if (nestedSeparator < 0) {
+				break;
+			}
+
+			clazz = clazz.substring(0, nestedSeparator);
+		}
+	}
+
+	private static final class Source {
+		final int version;
+		// The lines of the file, without the header. Equal lines are only stored once.
+		final Map<String, Line> lines = new LinkedHashMap<>();
+
+		Source(int version) {
+			this.version = version;
+		}
+	}
+
+	private static final class Line {
+		int count;
+		// Empty for blank lines and comments
+		List<Entry> entries;
+	}
+
+	private static final class Entry {
+		final EntryBatch.Kind kind;
+		final String owner;
+		final String name;
+		final String descriptor;
+		final AccessWidenerReader.AccessType access;
+
+		Entry(EntryBatch.Kind kind, String owner, String name, String descriptor, AccessWidenerReader.AccessType access) {
+			this.kind = kind;
+			this.owner = owner;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.access = access;
+		}
+	}
+
+	private static final class EntryCollector implements AccessWidenerVisitor {
+		List<Entry> entries;
+
+		@Override
+		public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+			// Rejects access types that don't apply to classes, like AccessWidener does
+			AccessWidener.applyAccess(access, AccessWidener.ClassAccess.DEFAULT);
+			entries.add(new Entry(EntryBatch.Kind.CLASS, name, null, null, access));
+		}
+
+		@Override
+		public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			AccessWidener.applyAccess(access, AccessWidener.MethodAccess.DEFAULT);
+			entries.add(new Entry(EntryBatch.Kind.METHOD, owner, name, descriptor, access));
+		}
+
+		@Override
+		public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			AccessWidener.applyAccess(access, AccessWidener.FieldAccess.DEFAULT);
+			entries.add(new Entry(EntryBatch.Kind.FIELD, owner, name, descriptor, access));
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map that stores its own entries on top of a parent map, which is never modified. Entries of the parent are
+ * shadowed by entries with the same key, and removing a key only hides it.
+ *
+ * <p>Null values aren't supported, they are used to mark removed keys.
+ */
+final class LayeredMap<K, V> extends AbstractMap<K, V> {
+	private final Map<K, V> parent;
+	private final Map<K, V> own = new HashMap<>();
+	// Size relative to the parent, so size doesn't need to iterate the entries
+	private int sizeDelta;
+
+	LayeredMap(Map<K, V> parent) {
+		this.parent = parent;
+	}
+
+	@Override
+	public V get(Object key) {
+		V value = own.get(key);
+
+		if (value != null || own.containsKey(key)) {
+			return value;
+		}
+
+		return parent.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+
+		V previous = get(key);
+		own.put(key, value);
+
+		if (previous == null) {
+			sizeDelta++;
+		}
+
+		return previous;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		V previous = get(key);
+
+		if (parent.containsKey(key)) {
+			own.put((K) key, null);
+		} else {
+			own.remove(key);
+		}
+
+		if (previous != null) {
+			sizeDelta--;
+		}
+
+		return previous;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return LayeredMap.this.size();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return parent.size() + sizeDelta;
+	}
+
+	/**
+	 * Iterates the parent's entries that aren't shadowed, followed by the own entries that aren't removed.
+	 */
+	private final class EntryIterator implements Iterator<Entry<K, V>> {
+		private final Iterator<Entry<K, V>> parentIterator = parent.entrySet().iterator();
+		private final Iterator<Entry<K, V>> ownIterator = own.entrySet().iterator();
+		private Entry<K, V> next;
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && parentIterator.hasNext()) {
+				Entry<K, V> entry = parentIterator.next();
+
+				if (!own.containsKey(entry.getKey())) {
+					next = entry;
+				}
+			}
+
+			while (next == null && ownIterator.hasNext()) {
+				Entry<K, V> entry = ownIterator.next();
+
+				if (entry.getValue() != null) {
+					next = entry;
+				}
+			}
+
+			return next != null;
+		}
+
+		@Override
+		public Entry<K, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			Entry<K, V> entry = next;
+			next = null;
+			return new SimpleImmutableEntry<>(entry);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set that stores the elements added to it on top of a parent set, which is never modified. Iterates the
+ * elements of the parent first, followed by the own elements in insertion order. Removing an element of the parent
+ * only hides it, adding it again shows it at its position in the parent.
+ */
+final class LayeredSet<E> extends AbstractSet<E> {
+	private final Set<E> parent;
+	// Never contains elements of the parent
+	private final Set<E> own = new LinkedHashSet<>();
+	// Elements of the parent that were removed
+	private final Set<Object> removed = new HashSet<>();
+
+	LayeredSet(Set<E> parent) {
+		this.parent = parent;
+	}
+
+	@Override
+	public boolean add(E e) {
+		if (parent.contains(e)) {
+			return removed.remove(e);
+		}
+
+		return own.add(e);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (own.remove(o)) {
+			return true;
+		}
+
+		return parent.contains(o) && removed.add(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return own.contains(o) || parent.contains(o) && !removed.contains(o);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		Iterator<E> parentIterator = parent.iterator();
+		Iterator<E> ownIterator = own.iterator();
+
+		return new Iterator<E>() {
+			private E next;
+			private boolean hasNext;
+
+			@Override
+			public boolean hasNext() {
+				while (!hasNext && parentIterator.hasNext()) {
+					E element = parentIterator.next();
+
+					if (!removed.contains(element)) {
+						next = element;
+						hasNext = true;
+					}
+				}
+
+				if (!hasNext && ownIterator.hasNext()) {
+					next = ownIterator.next();
+					hasNext = true;
+				}
+
+				return hasNext;
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				hasNext = false;
+				return next;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		// Only elements of the parent are ever removed
+		return parent.size() - removed.size() + own.size();
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The entries of lazily read access widener files that haven't been read yet, by the class they belong to.
+ *
+ * <p>All methods except {@link #isLoaded} must be called while holding the lock of this object.
+ */
+final class LazyRules {
+	private final AccessWidener accessWidener;
+	// Concurrent, so isLoaded can be called without the lock. Owners are only removed once their entries were read.
+	private final Map<String, List<PendingLine>> pending = new ConcurrentHashMap<>();
+	// Whether the rules of the access widener can be read while entries of other classes are read into them
+	private final boolean concurrentReads;
+
+	LazyRules(AccessWidener accessWidener) {
+		this.accessWidener = accessWidener;
+		this.concurrentReads = accessWidener.classAccess instanceof ConcurrentMap
+				&& accessWidener.methodAccess instanceof ConcurrentMap
+				&& accessWidener.fieldAccess instanceof ConcurrentMap;
+	}
+
+	/**
+	 * Returns whether the entries of a class were read, so its rules can be looked up without holding the lock.
+	 * Always false for access wideners whose rules can't be read concurrently, like derived access wideners.
+	 */
+	boolean isLoaded(String owner) {
+		return concurrentReads && !pending.containsKey(owner);
+	}
+
+	/**
+	 * Reads the header of the file and finds the owner of every entry, without reading the entries. Lines whose
+	 * owner can't be determined are read right away, so syntax errors in them are still reported immediately.
+	 */
+	void scan(byte[] content, String currentNamespace) {
+		AccessWidenerReader.Header header = AccessWidenerReader.readHeader(content);
+
+		if (currentNamespace != null && !header.getNamespace().equals(currentNamespace)) {
+			throw new AccessWidenerFormatException(1, String.format("Namespace (%s) does not match current runtime namespace (%s)",
+					header.getNamespace(), currentNamespace));
+		}
+
+		accessWidener.visitHeader(header.getNamespace());
+
+		Source source = new Source(new String(content, AccessWidenerReader.ENCODING), header.getVersion());
+		String text = source.text;
+		int lineNumber = 0;
+		int start = 0;
+
+		// Splits lines like BufferedReader does
+		while (start < text.length()) {
+			int end = start;
+
+			while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+				end++;
+			}
+
+			lineNumber++;
+
+			// The header is the first line
+			if (lineNumber > 1) {
+				scanLine(source, lineNumber, start, end);
+			}
+
+			if (end < text.length() - 1 && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') {
+				end++;
+			}
+
+			start = end + 1;
+		}
+	}
+
+	private void scanLine(Source source, int lineNumber, int start, int lineEnd) {
+		String text = source.text;
+		int end = start;
+
+		while (end < lineEnd && text.charAt(end) != '#') {
+			end++;
+		}
+
+		// The owner is the third token, for class entries as well as member entries
+		int ownerStart = -1;
+		int ownerEnd = -1;
+		int token = 0;
+		int i = start;
+
+		while (i < end && token < 3) {
+			if (source.isDelimiter(text.charAt(i))) {
+				if (i == start) {
+					// Leading whitespace, leave the details to the reader
+					break;
+				}
+
+				i++;
+				continue;
+			}
+
+			int tokenStart = i;
+
+			while (i < end && !source.isDelimiter(text.charAt(i))) {
+				i++;
+			}
+
+			if (++token == 3) {
+				ownerStart = tokenStart;
+				ownerEnd = i;
+			}
+		}
+
+		if (ownerStart < 0) {
+			if (end > start) {
+				// Not an entry with an owner, probably malformed
+				new PendingLine(source, lineNumber, start, lineEnd).read(accessWidener);
+			}
+
+			return;
+		}
+
+		String owner = text.substring(ownerStart, ownerEnd);
+
+		if (owner.indexOf('.') >= 0) {
+			// Malformed class name
+			new PendingLine(source, lineNumber, start, lineEnd).read(accessWidener);
+			return;
+		}
+
+		pending.computeIfAbsent(owner, k -> new ArrayList<>()).add(new PendingLine(source, lineNumber, start, lineEnd));
+		accessWidener.addTargets(owner);
+	}
+
+	/**
+	 * Reads the pending entries of a class.
+	 */
+	void load(String owner) {
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		List<PendingLine> lines = pending.get(owner);
+
+		if (lines == null) {
+			return;
+		}
+
+		for (int i = 0; i < lines.size(); i++) {
+			try {
+				lines.get(i).read(accessWidener);
+			} catch (RuntimeException e) {
+				// Keep the failing line and the ones after it, so every later lookup of the class fails as well
+				// instead of returning part of its rules
+				pending.put(owner, new ArrayList<>(lines.subList(i, lines.size())));
+				throw e;
+			}
+		}
+
+		// Only now, so other threads don't look up the rules of the class before they were read
+		pending.remove(owner);
+	}
+
+	/**
+	 * Reads the pending entries of a class and of the classes nested in it.
+	 */
+	void loadNested(String owner) {
+		load(owner);
+
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		String prefix = owner + '$';
+		List<String> nested = new ArrayList<>();
+
+		for (String pendingOwner : pending.keySet()) {
+			if (pendingOwner.startsWith(prefix)) {
+				nested.add(pendingOwner);
+			}
+		}
+
+		for (String nestedOwner : nested) {
+			load(nestedOwner);
+		}
+	}
+
+	/**
+	 * Reads all pending entries.
+	 */
+	void loadAll() {
+		while (!pending.isEmpty()) {
+			load(pending.keySet().iterator().next());
+		}
+	}
+
+	private static final class Source {
+		final String text;
+		final int version;
+		private AccessWidenerReader reader;
+
+		Source(String text, int version) {
+			this.text = text;
+			this.version = version;
+		}
+
+		boolean isDelimiter(char c) {
+			// Matches the delimiters of AccessWidenerReader
+			return version < 2 ? Character.isWhitespace(c) : c == ' ' || c == '\t';
+		}
+
+		AccessWidenerReader reader(AccessWidener accessWidener) {
+			if (reader == null) {
+				reader = new AccessWidenerReader(accessWidener);
+			}
+
+			return reader;
+		}
+	}
+
+	private static final class PendingLine {
+		final Source source;
+		final int lineNumber;
+		final int start;
+		final int end;
+
+		PendingLine(Source source, int lineNumber, int start, int end) {
+			this.source = source;
+			this.lineNumber = lineNumber;
+			this.start = start;
+			this.end = end;
+		}
+
+		void read(AccessWidener accessWidener) {
+			source.reader(accessWidener).readLine(source.text.substring(start, end), lineNumber, source.version);
+		}
+	}
+}
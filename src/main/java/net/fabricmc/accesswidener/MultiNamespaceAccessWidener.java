@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Holds the rules of an access widener in several namespaces at once, so they only need to be read once.
+ *
+ * <p>Every namespace has its own read-only rules, as {@link AccessWidener#remap(Remapper, String)} creates them. The
+ * rules of namespaces are shared with the first namespace that has equal rules, which is common for the class or member
+ * rules of namespaces that only differ in some names. Entries whose names don't change share the {@link EntryTriple}
+ * of the source namespace as well.
+ *
+ * <p>The rules are copied from the source access widener when this is created, so changing it afterwards doesn't
+ * affect any namespace. The access wideners returned by {@link #get(String)} can't be changed. Namespaces must be
+ * added before any lookups are done from other threads.
+ */
+public final class MultiNamespaceAccessWidener {
+	private static final Map<AccessWidener.Access, Set<AccessWidenerReader.AccessType>> ACCESS_TYPES = new HashMap<>();
+
+	private final AccessWidener source;
+	private final Map<String, AccessWidener> namespaces = new LinkedHashMap<>();
+
+	static {
+		addAccessTypes(AccessWidener.ClassAccess.DEFAULT, AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.EXTENDABLE);
+		addAccessTypes(AccessWidener.MethodAccess.DEFAULT, AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.EXTENDABLE);
+		addAccessTypes(AccessWidener.FieldAccess.DEFAULT, AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.MUTABLE);
+	}
+
+	/**
+	 * @param source The access widener whose rules to hold, in its namespace.
+	 */
+	public MultiNamespaceAccessWidener(AccessWidener source) {
+		if (source.getNamespace() == null) {
+			throw new IllegalArgumentException("The access widener has no namespace");
+		}
+
+		this.source = source.copy();
+		namespaces.put(source.getNamespace(), readOnly(this.source));
+	}
+
+	/**
+	 * Adds the rules in another namespace.
+	 *
+	 * @param remapper Remaps names from the namespace of the source access widener to the new namespace, like
+	 *                 {@link AccessWidener#remap(Remapper, String)} does.
+	 */
+	public MultiNamespaceAccessWidener addNamespace(String namespace, Remapper remapper) {
+		if (namespaces.containsKey(namespace)) {
+			throw new IllegalArgumentException("Namespace " + namespace + " was already added");
+		}
+
+		namespaces.put(namespace, readOnly(source.remap(remapper, namespace)));
+		return this;
+	}
+
+	public Set<String> getNamespaces() {
+		return Collections.unmodifiableSet(namespaces.keySet());
+	}
+
+	/**
+	 * Returns the access widener for a namespace, for example to transform classes in that namespace with
+	 * {@link AccessWidenerClassVisitor}. It can't be changed.
+	 */
+	public AccessWidener get(String namespace) {
+		return getNamespace(namespace);
+	}
+
+	/**
+	 * @return the targets in the namespace, as in {@link AccessWidener#getTargets()}
+	 */
+	public Set<String> getTargets(String namespace) {
+		return get(namespace).getTargets();
+	}
+
+	/**
+	 * @param className the class-file internal binary name of the class in the namespace
+	 */
+	public boolean isTarget(String namespace, String className) {
+		return get(namespace).isTarget(className);
+	}
+
+	/**
+	 * @param className the class-file internal binary name of the class in the namespace
+	 * @return the access types applied to the class, including those implied by entries of its members
+	 */
+	public Set<AccessWidenerReader.AccessType> getClassAccess(String namespace, String className) {
+		return ACCESS_TYPES.get(get(namespace).getClassAccess(className));
+	}
+
+	/**
+	 * @param method the method, with names in the namespace
+	 * @return the access types applied to the method
+	 */
+	public Set<AccessWidenerReader.AccessType> getMethodAccess(String namespace, EntryTriple method) {
+		return ACCESS_TYPES.get(get(namespace).getMethodAccess(method));
+	}
+
+	/**
+	 * @param field the field, with names in the namespace
+	 * @return the access types applied to the field
+	 */
+	public Set<AccessWidenerReader.AccessType> getFieldAccess(String namespace, EntryTriple field) {
+		return ACCESS_TYPES.get(get(namespace).getFieldAccess(field));
+	}
+
+	private AccessWidener getNamespace(String namespace) {
+		AccessWidener result = namespaces.get(namespace);
+
+		if (result == null) {
+			throw new IllegalArgumentException("Unknown namespace " + namespace);
+		}
+
+		return result;
+	}
+
+	private AccessWidener readOnly(AccessWidener rules) {
+		Collection<AccessWidener> existing = namespaces.values();
+		return new AccessWidener(
+				rules.getNamespace(),
+				share(rules.classAccess, existing, namespace -> namespace.classAccess),
+				share(rules.methodAccess, existing, namespace -> namespace.methodAccess),
+				share(rules.fieldAccess, existing, namespace -> namespace.fieldAccess),
+				shareTargets(rules.classes, existing),
+				share(rules.classFingerprints, existing, namespace -> namespace.classFingerprints),
+				rules.fingerprint
+		);
+	}
+
+	/**
+	 * Returns the read-only rules of an existing namespace if they are equal, or a read-only view of the given ones.
+	 */
+	private static <K, V> Map<K, V> share(Map<K, V> rules, Collection<AccessWidener> namespaces, Function<AccessWidener, Map<K, V>> getter) {
+		for (AccessWidener namespace : namespaces) {
+			Map<K, V> shared = getter.apply(namespace);
+
+			if (shared.equals(rules)) {
+				return shared;
+			}
+		}
+
+		return Collections.unmodifiableMap(rules);
+	}
+
+	private static Set<String> shareTargets(Set<String> targets, Collection<AccessWidener> namespaces) {
+		for (AccessWidener namespace : namespaces) {
+			if (namespace.classes.equals(targets)) {
+				return namespace.classes;
+			}
+		}
+
+		return Collections.unmodifiableSet(targets);
+	}
+
+	private static void addAccessTypes(AccessWidener.Access defaultAccess, AccessWidenerReader.AccessType first, AccessWidenerReader.AccessType second) {
+		for (int combination = 0; combination < 4; combination++) {
+			Set<AccessWidenerReader.AccessType> types = EnumSet.noneOf(AccessWidenerReader.AccessType.class);
+			AccessWidener.Access access = defaultAccess;
+
+			if ((combination & 1) != 0) {
+				types.add(first);
+				access = AccessWidener.applyAccess(first, access);
+			}
+
+			if ((combination & 2) != 0) {
+				types.add(second);
+				access = AccessWidener.applyAccess(second, access);
+			}
+
+			ACCESS_TYPES.put(access, Collections.unmodifiableSet(types));
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Like {@link ForwardingVisitor}, but every visitor receives the events on its own worker, so the visitors run
+ * concurrently.
+ *
+ * <p>Each visitor has a bounded queue of pending events and receives them in the order they were visited. Visiting
+ * blocks while a queue is full, unless its worker stopped, for example because its thread was interrupted. Once all
+ * events have been visited, {@link #close()} waits for the visitors to process them.
+ *
+ * <p>If a visitor throws, the remaining events are discarded, and the next visit or {@link #close()} rethrows the
+ * first failure. A visit rethrowing the failure also stops the workers, so they don't need to be closed afterwards.
+ * Closing more than once has no further effect.
+ */
+public final class ParallelForwardingVisitor implements AccessWidenerVisitor, AutoCloseable {
+	private static final Event END = new Event(EntryBatch.Kind.CLASS, null, null, null, null, false);
+	// How often a producer blocked on a full queue checks whether the worker is still running
+	private static final long OFFER_TIMEOUT_MILLIS = 50;
+
+	private final Worker[] workers;
+	private final CountDownLatch finished;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private boolean closed;
+
+	/**
+	 * @param executor      Runs a worker for each visitor until {@link #close()} is called. It must be able to run
+	 *                      all of them at the same time.
+	 * @param queueCapacity The number of events that can be pending for a single visitor.
+	 * @param visitors      The visitors to forward the events to.
+	 */
+	public ParallelForwardingVisitor(Executor executor, int queueCapacity, AccessWidenerVisitor... visitors) {
+		this.workers = new Worker[visitors.length];
+		this.finished = new CountDownLatch(visitors.length);
+
+		for (int i = 0; i < visitors.length; i++) {
+			workers[i] = new Worker(visitors[i], new ArrayBlockingQueue<>(queueCapacity));
+			executor.execute(workers[i]);
+		}
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		// The header is passed in the owner slot
+		put(new Event(null, namespace, null, null, null, false));
+	}
+
+	@Override
+	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		put(new Event(EntryBatch.Kind.CLASS, name, null, null, access, transitive));
+	}
+
+	@Override
+	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		put(new Event(EntryBatch.Kind.METHOD, owner, name, descriptor, access, transitive));
+	}
+
+	@Override
+	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		put(new Event(EntryBatch.Kind.FIELD, owner, name, descriptor, access, transitive));
+	}
+
+	/**
+	 * Waits until all visitors have processed all events.
+	 *
+	 * @throws RuntimeException the first failure of a visitor, if any
+	 */
+	@Override
+	public void close() {
+		finish();
+
+		try {
+			finished.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		checkFailure();
+	}
+
+	private void put(Event event) {
+		if (failure.get() != null) {
+			// Callers usually propagate the failure without closing, so the workers are stopped right away
+			finish();
+			checkFailure();
+		}
+
+		if (closed) {
+			throw new IllegalStateException("The visitor has been closed");
+		}
+
+		enqueue(event);
+	}
+
+	private void finish() {
+		if (!closed) {
+			closed = true;
+			enqueue(END);
+		}
+	}
+
+	private void enqueue(Event event) {
+		try {
+			for (Worker worker : workers) {
+				// A worker that exited, for example because its thread was interrupted, never takes the event.
+				// Its failure is rethrown by the next visit or close.
+				while (!worker.exited && !worker.queue.offer(event, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					// Check whether the worker is still running
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkFailure() {
+		Throwable t = failure.get();
+
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		} else if (t != null) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	private final class Worker implements Runnable {
+		final AccessWidenerVisitor visitor;
+		final BlockingQueue<Event> queue;
+		volatile boolean exited;
+
+		Worker(AccessWidenerVisitor visitor, BlockingQueue<Event> queue) {
+			this.visitor = visitor;
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Event event;
+
+				while ((event = queue.take()) != END) {
+					// Keep draining after a failure, so the producer never blocks on a full queue
+					if (failure.get() == null) {
+						try {
+							event.accept(visitor);
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				failure.compareAndSet(null, e);
+				Thread.currentThread().interrupt();
+			} finally {
+				exited = true;
+				finished.countDown();
+			}
+		}
+	}
+
+	private static final class Event {
+		// Null for headers
+		final EntryBatch.Kind kind;
+		final String owner;
+		final String name;
+		final String descriptor;
+		final AccessWidenerReader.AccessType access;
+		final boolean transitive;
+
+		Event(EntryBatch.Kind kind, String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			this.kind = kind;
+			this.owner = owner;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.access = access;
+			this.transitive = transitive;
+		}
+
+		void accept(AccessWidenerVisitor visitor) {
+			if (kind == null) {
+				visitor.visitHeader(owner);
+				return;
+			}
+
+			switch (kind) {
+			case CLASS:
+				visitor.visitClass(owner, access, transitive);
+				break;
+			case METHOD:
+				visitor.visitMethod(owner, name, descriptor, access, transitive);
+				break;
+			case FIELD:
+				visitor.visitField(owner, name, descriptor, access, transitive);
+				break;
+			}
+		}
+	}
+}
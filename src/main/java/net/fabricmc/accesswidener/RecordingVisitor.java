@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Records the events it visits, so they can be replayed to any number of visitors without reading the access widener
+ * again.
+ *
+ * <p>Events are stored in columns: every name is interned into a symbol table and referenced by its index, and the
+ * kind of event, its access type and whether it is transitive are packed into a single byte.
+ *
+ * <p>Replaying is safe from multiple threads at once, as long as no events are recorded at the same time.
+ */
+public final class RecordingVisitor implements AccessWidenerVisitor {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final byte HEADER = 0;
+	private static final byte CLASS = 1;
+	private static final byte METHOD = 2;
+	private static final byte FIELD = 3;
+	private static final int KIND_MASK = 0b11;
+	private static final int ACCESS_SHIFT = 2;
+	private static final int ACCESS_MASK = 0b11;
+	private static final int TRANSITIVE = 1 << 4;
+	private static final AccessWidenerReader.AccessType[] ACCESS_TYPES = AccessWidenerReader.AccessType.values();
+
+	private final Map<String, Integer> symbolIds = new HashMap<>();
+	private String[] symbols = new String[INITIAL_CAPACITY];
+	private int symbolCount;
+
+	private byte[] flags = new byte[INITIAL_CAPACITY];
+	// For headers the owner column holds the namespace, for classes it holds the class name
+	private int[] owners = new int[INITIAL_CAPACITY];
+	private int[] names = new int[INITIAL_CAPACITY];
+	private int[] descriptors = new int[INITIAL_CAPACITY];
+	private int size;
+
+	@Override
+	public void visitHeader(String namespace) {
+		add(HEADER, namespace, null, null, null, false);
+	}
+
+	@Override
+	public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+		add(CLASS, name, null, null, access, transitive);
+	}
+
+	@Override
+	public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		add(METHOD, owner, name, descriptor, access, transitive);
+	}
+
+	@Override
+	public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		add(FIELD, owner, name, descriptor, access, transitive);
+	}
+
+	/**
+	 * @return the number of recorded events, including headers
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Replays all recorded events to the visitor, in the order they were recorded.
+	 */
+	public void accept(AccessWidenerVisitor visitor) {
+		for (int i = 0; i < size; i++) {
+			int flag = flags[i];
+			String owner = symbols[owners[i]];
+
+			if ((flag & KIND_MASK) == HEADER) {
+				visitor.visitHeader(owner);
+				continue;
+			}
+
+			AccessWidenerReader.AccessType access = ACCESS_TYPES[(flag >>> ACCESS_SHIFT) & ACCESS_MASK];
+			boolean transitive = (flag & TRANSITIVE) != 0;
+
+			switch (flag & KIND_MASK) {
+			case CLASS:
+				visitor.visitClass(owner, access, transitive);
+				break;
+			case METHOD:
+				visitor.visitMethod(owner, symbols[names[i]], symbols[descriptors[i]], access, transitive);
+				break;
+			default:
+				visitor.visitField(owner, symbols[names[i]], symbols[descriptors[i]], access, transitive);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Replays all recorded events to each of the visitors, concurrently on the given executor. Every visitor still
+	 * receives the events in the order they were recorded.
+	 *
+	 * @return a future that completes once all visitors have received all events, or completes exceptionally with
+	 * the first failure of a visitor
+	 */
+	public CompletableFuture<Void> acceptAsync(Executor executor, AccessWidenerVisitor... visitors) {
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[visitors.length];
+
+		for (int i = 0; i < visitors.length; i++) {
+			AccessWidenerVisitor visitor = visitors[i];
+			futures[i] = CompletableFuture.runAsync(() -> accept(visitor), executor);
+		}
+
+		return CompletableFuture.allOf(futures);
+	}
+
+	private void add(byte kind, String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+		if (size == flags.length) {
+			int capacity = size * 2;
+			flags = Arrays.copyOf(flags, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+			names = Arrays.copyOf(names, capacity);
+			descriptors = Arrays.copyOf(descriptors, capacity);
+		}
+
+		int flag = kind;
+
+		if (access != null) {
+			flag |= access.ordinal() << ACCESS_SHIFT;
+		}
+
+		if (transitive) {
+			flag |= TRANSITIVE;
+		}
+
+		flags[size] = (byte) flag;
+		owners[size] = getSymbolId(owner);
+		names[size] = name != null ? getSymbolId(name) : -1;
+		descriptors[size] = descriptor != null ? getSymbolId(descriptor) : -1;
+		size++;
+	}
+
+	private int getSymbolId(String symbol) {
+		Integer id = symbolIds.get(symbol);
+
+		if (id != null) {
+			return id;
+		}
+
+		if (symbolCount == symbols.length) {
+			symbols = Arrays.copyOf(symbols, symbolCount * 2);
+		}
+
+		symbols[symbolCount] = symbol;
+		symbolIds.put(symbol, symbolCount);
+		return symbolCount++;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+/**
+ * Computes 64-bit hashes of individual access widener rules.
+ *
+ * <p>Fingerprints of rule sets are the sum of their entry hashes, which makes them independent of the order in
+ * which the rules were visited. The hashes only depend on the content of the rule and are stable across JVM runs.
+ */
+final class RuleFingerprint {
+	static final char CLASS = 'c';
+	static final char METHOD = 'm';
+	static final char FIELD = 'f';
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private RuleFingerprint() {
+	}
+
+	static long hash(char kind, String owner, String name, String descriptor, AccessWidener.Access access) {
+		if (access == AccessWidener.ClassAccess.DEFAULT
+				|| access == AccessWidener.MethodAccess.DEFAULT
+				|| access == AccessWidener.FieldAccess.DEFAULT) {
+			// Default access doesn't change anything, so it mustn't contribute to the fingerprint either
+			return 0;
+		}
+
+		long hash = FNV_OFFSET_BASIS;
+		hash = update(hash, kind);
+		hash = update(hash, owner);
+		hash = update(hash, name);
+		hash = update(hash, descriptor);
+		hash = update(hash, access.toString());
+		return mix(hash);
+	}
+
+	private static long update(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash = update(hash, value.charAt(i));
+		}
+
+		// Terminate the value so that ("ab", "c") and ("a", "bc") hash differently
+		return update(hash, '\0');
+	}
+
+	private static long update(long hash, char c) {
+		hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+		return (hash ^ (c >>> 8)) * FNV_PRIME;
+	}
+
+	// Finalizer of MurmurHash3, spreads the bits of the FNV hash before the hashes are summed up
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -19,8 +19,9 @@ package net.fabricmc.accesswidener;
 /**
  * Decorates a visitor to only receive elements that are marked as transitive.
  */
-public final class TransitiveOnlyFilter implements AccessWidenerVisitor {
+public final class TransitiveOnlyFilter implements AccessWidenerBatchVisitor {
 	private final AccessWidenerVisitor delegate;
+	private final EntryBatch filtered = new EntryBatch();
 
 	public TransitiveOnlyFilter(AccessWidenerVisitor delegate) {
 		this.delegate = delegate;
@@ -51,4 +52,19 @@ public final class TransitiveOnlyFilter implements AccessWidenerVisitor {
 			delegate.visitField(owner, name, descriptor, access, transitive);
 		}
 	}
+
+	@Override
+	public void visitBatch(EntryBatch batch) {
+		filtered.clear();
+
+		for (int i = 0; i < batch.size(); i++) {
+			if (batch.isTransitive(i)) {
+				filtered.add(batch.getKind(i), batch.getOwner(i), batch.getName(i), batch.getDescriptor(i), batch.getAccess(i), true);
+			}
+		}
+
+		if (!filtered.isEmpty()) {
+			filtered.forward(delegate);
+		}
+	}
 }
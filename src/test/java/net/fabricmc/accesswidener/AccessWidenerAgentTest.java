@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+class AccessWidenerAgentTest {
+	AccessWidener widener = new AccessWidener();
+	AccessWidenerAgent agent = new AccessWidenerAgent(widener);
+
+	@Test
+	void testTransformsTargets() throws IOException {
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		byte[] transformed = agent.transform(null, "test/PackagePrivateClass", null, null, readClass("test/PackagePrivateClass"));
+		assertThat(new ClassReader(transformed).getAccess() & Opcodes.ACC_PUBLIC).isNotZero();
+	}
+
+	@Test
+	void testIgnoresClassesThatAreNotTargeted() throws IOException {
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		assertThat(agent.transform(null, "test/PrivateInnerClass", null, null, readClass("test/PrivateInnerClass"))).isNull();
+		// Lambda forms and hidden classes have no name
+		assertThat(agent.transform(null, null, null, null, new byte[0])).isNull();
+	}
+
+	@Test
+	void testTargetsOfLazilyReadFiles() {
+		widener.readLazily("accessWidener\tv2\tnamed\naccessible\tclass\ttest/PrivateInnerClass$Inner\n".getBytes(StandardCharsets.UTF_8), null);
+
+		assertThat(widener.isTarget("test/PrivateInnerClass$Inner")).isTrue();
+		assertThat(widener.isTarget("test/PrivateInnerClass")).isTrue();
+		assertThat(widener.isTarget("test.PrivateInnerClass")).isFalse();
+	}
+
+	@Test
+	void testReadsFilesFromArgument(@TempDir Path directory) throws IOException {
+		Path a = directory.resolve("a.accesswidener");
+		Path b = directory.resolve("b.accesswidener");
+		Files.writeString(a, "accessWidener\tv2\tnamed\naccessible\tclass\ta/A\n");
+		Files.writeString(b, "accessWidener\tv2\tnamed\nextendable\tclass\tb/B\n");
+
+		// Empty paths, like those of a trailing separator, are skipped
+		AccessWidener read = AccessWidenerAgent.read(a + File.pathSeparator + b + File.pathSeparator);
+		assertThat(read.getTargets()).containsExactly("a.A", "b.B");
+		assertThat(AccessWidenerAgent.read(null).getTargets()).isEmpty();
+
+		Path missing = directory.resolve("missing.accesswidener");
+		assertThrows(UncheckedIOException.class, () -> AccessWidenerAgent.read(missing.toString()));
+	}
+
+	@Test
+	void testRetransformsOnlyLoadedTargets() {
+		List<Class<?>> retransformed = new ArrayList<>();
+		Instrumentation instrumentation = createInstrumentation(retransformed);
+
+		Map<String, Throwable> failures = agent.retransform(instrumentation,
+				Arrays.asList("java/lang/String", "java/lang/Integer", "java/lang/Object", "not/Loaded"));
+
+		// Long isn't requested, Object isn't modifiable, and the failure for Integer doesn't stop the others
+		assertThat(retransformed).containsExactly(String.class);
+		assertThat(failures).containsOnlyKeys("java/lang/Integer");
+		assertThat(failures.get("java/lang/Integer")).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	void testAgentmainThrowsRetransformFailures(@TempDir Path directory) throws IOException {
+		Path file = directory.resolve("a.accesswidener");
+		Files.writeString(file, "accessWidener\tv2\tnamed\naccessible\tclass\tjava/lang/Integer\naccessible\tclass\tjava/lang/String\n");
+		List<Class<?>> retransformed = new ArrayList<>();
+
+		IllegalStateException e = assertThrows(IllegalStateException.class,
+				() -> AccessWidenerAgent.agentmain(file.toString(), createInstrumentation(retransformed)));
+		assertThat(retransformed).containsExactly(String.class);
+		assertThat(e.getSuppressed()).hasSize(1);
+		assertThat(e.getSuppressed()[0]).hasMessageContaining("java/lang/Integer").hasCauseInstanceOf(UnsupportedOperationException.class);
+	}
+
+	private Instrumentation createInstrumentation(List<Class<?>> retransformed) {
+		return (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Instrumentation.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "addTransformer":
+						return null;
+					case "isRetransformClassesSupported":
+						return true;
+					case "getAllLoadedClasses":
+						return new Class<?>[] {Integer.class, String.class, Long.class, Object.class, int[].class, int.class};
+					case "isModifiableClass":
+						return args[0] != Object.class;
+					case "retransformClasses":
+						Class<?> target = ((Class<?>[]) args[0])[0];
+
+						if (target == Integer.class) {
+							throw new UnsupportedOperationException("class redefinition failed: attempted to change the class modifiers");
+						}
+
+						retransformed.add(target);
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private byte[] readClass(String className) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("/" + className + ".class")) {
+			return in.readAllBytes();
+		}
+	}
+}
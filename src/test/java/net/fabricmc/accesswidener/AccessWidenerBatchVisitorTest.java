@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+class AccessWidenerBatchVisitorTest {
+	static final byte[] INPUT = ("accessWidener\tv2\tintermediary\n"
+			+ "accessible\tclass\ta/Class\n"
+			+ "transitive-accessible\tmethod\ta/Class\tmethod\t(La/Class;)V\n"
+			+ "# comment\n"
+			+ "mutable\tfield\ta/Class\tfield\tLa/Class;\n"
+			+ "transitive-extendable\tclass\ta/Other\n"
+			+ "transitive-mutable\tfield\ta/Other\tfield\tI\n").getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	void testBatchedPipelineMatchesPerEntryPipeline() {
+		AccessWidenerWriter expected = new AccessWidenerWriter();
+		new AccessWidenerReader(createPipeline(expected)).read(INPUT);
+
+		for (int batchSize = 1; batchSize <= 6; batchSize++) {
+			AccessWidenerWriter writer = new AccessWidenerWriter();
+			new AccessWidenerReader(createPipeline(writer), batchSize).read(INPUT);
+			assertEquals(expected.writeString(), writer.writeString(), "batch size " + batchSize);
+		}
+
+		assertThat(expected.writeString()).isEqualTo("accessWidener\tv2\tnamed\n"
+				+ "transitive-accessible\tmethod\tb/Class\tmethod2\t(Lb/Class;)V\n"
+				+ "transitive-extendable\tclass\ta/Other\n"
+				+ "transitive-mutable\tfield\ta/Other\tfield\tI\n");
+	}
+
+	@Test
+	void testReaderPassesBatches() {
+		List<Integer> batchSizes = new ArrayList<>();
+		AccessWidener accessWidener = new AccessWidener();
+		new AccessWidenerReader(new AccessWidenerBatchVisitor() {
+			@Override
+			public void visitBatch(EntryBatch batch) {
+				batchSizes.add(batch.size());
+				batch.forward(accessWidener);
+			}
+		}, 2).read(INPUT);
+
+		assertThat(batchSizes).containsExactly(2, 2, 1);
+		assertThat(accessWidener.getTargets()).containsExactly("a.Class", "a.Other");
+		assertEquals(AccessWidener.FieldAccess.MUTABLE, accessWidener.getFieldAccess(new EntryTriple("a/Other", "field", "I")));
+	}
+
+	@Test
+	void testVisitorErrorIsReportedAtFirstLineOfBatch() {
+		AccessWidenerReader reader = new AccessWidenerReader(new AccessWidenerVisitor() {
+			@Override
+			public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				throw new IllegalStateException("broken");
+			}
+		}, 2);
+
+		AccessWidenerFormatException e = assertThrows(AccessWidenerFormatException.class, () -> reader.read(INPUT));
+		assertEquals(5, e.getLineNumber());
+		assertThat(e).hasMessageContaining("broken");
+	}
+
+	@Test
+	void testPerEntryVisitorsReceiveBatchesEntryByEntry() {
+		EntryBatch batch = new EntryBatch(1);
+		batch.addClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		batch.addMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.EXTENDABLE, true);
+		batch.addField("a/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		writer.visitHeader("ns");
+		batch.forward(writer);
+
+		assertEquals("accessWidener\tv2\tns\n"
+				+ "accessible\tclass\ta/Class\n"
+				+ "transitive-extendable\tmethod\ta/Class\tmethod\t()V\n"
+				+ "mutable\tfield\ta/Class\tfield\tI\n", writer.writeString());
+
+		batch.clear();
+		assertEquals(0, batch.size());
+	}
+
+	private static AccessWidenerVisitor createPipeline(AccessWidenerWriter writer) {
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put("a/Class", "b/Class");
+		mappings.put("a/Other", "a/Other");
+		mappings.put("a/Class.method(La/Class;)V", "method2");
+		SimpleRemapper remapper = new SimpleRemapper(mappings);
+
+		return new ForwardingVisitor(
+				new AccessWidener(),
+				new TransitiveOnlyFilter(new AccessWidenerRemapper(writer, remapper, "intermediary", "named"))
+		);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+class AccessWidenerBulkRemapperTest {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	AccessWidenerBulkRemapper remapper;
+
+	AccessWidenerBulkRemapperTest() {
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put("a/Class", "newa/NewClass");
+		mappings.put("a/Class.someMethod()I", "otherMethod");
+		mappings.put("g/Class", "newg/NewClass");
+		remapper = new AccessWidenerBulkRemapper(new SimpleRemapper(mappings), "original", "named");
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void testRemapsAllInputsInOrder() {
+		Map<String, byte[]> inputs = new LinkedHashMap<>();
+
+		for (int i = 0; i < 20; i++) {
+			inputs.put("mod" + i, bytes("accessWidener\tv" + (i % 2 + 1) + "\toriginal\n"
+					+ "accessible\tmethod\ta/Class\tsomeMethod\t()I\n"
+					+ "mutable\tfield\tg/Class\tfield" + i + "\tLa/Class;\n"));
+		}
+
+		Map<String, AccessWidenerBulkRemapper.Result> results = remapper.remap(inputs, executor);
+
+		assertThat(results).containsOnlyKeys(inputs.keySet());
+		assertThat(results.keySet()).containsExactlyElementsOf(inputs.keySet());
+		assertEquals("accessWidener\tv2\tnamed\n"
+				+ "accessible\tmethod\tnewa/NewClass\totherMethod\t()I\n"
+				+ "mutable\tfield\tnewg/NewClass\tfield1\tLnewa/NewClass;\n", string(results.get("mod1").getOutput()));
+		// Files keep their format version
+		assertThat(string(results.get("mod0").getOutput())).startsWith("accessWidener\tv1\tnamed\n");
+	}
+
+	@Test
+	void testIsolatesFailures() {
+		Map<String, byte[]> inputs = new LinkedHashMap<>();
+		inputs.put("broken", bytes("accessWidener\tv2\toriginal\nblergh\n"));
+		inputs.put("wrongNamespace", bytes("accessWidener\tv2\tnamed\n"));
+		inputs.put("valid", bytes("accessWidener\tv2\toriginal\naccessible\tclass\ta/Class\n"));
+
+		Map<String, AccessWidenerBulkRemapper.Result> results = remapper.remap(inputs, executor);
+
+		assertThat(results.get("broken").isSuccessful()).isFalse();
+		assertThat(results.get("broken").getError()).isInstanceOf(AccessWidenerFormatException.class);
+		assertThat(results.get("wrongNamespace").getError()).hasMessageContaining("Cannot remap access widener from namespace 'named'");
+		assertThat(results.get("valid").isSuccessful()).isTrue();
+		assertEquals("accessWidener\tv2\tnamed\naccessible\tclass\tnewa/NewClass\n", string(results.get("valid").getOutput()));
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] content) {
+		return new String(content, StandardCharsets.UTF_8);
+	}
+}
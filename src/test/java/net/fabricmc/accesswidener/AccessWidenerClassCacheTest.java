@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+class AccessWidenerClassCacheTest {
+	AccessWidener widener = new AccessWidener();
+	byte[] classBytes;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		try (InputStream in = getClass().getResourceAsStream("/test/PackagePrivateClass.class")) {
+			classBytes = in.readAllBytes();
+		}
+	}
+
+	@Test
+	void testTransformsTargetedClasses() {
+		AccessWidenerClassCache cache = new AccessWidenerClassCache(widener, 1024 * 1024, null);
+		byte[] transformed = cache.transform("test/PackagePrivateClass", classBytes);
+		assertThat(new ClassReader(transformed).getAccess() & Opcodes.ACC_PUBLIC).isNotZero();
+	}
+
+	@Test
+	void testSkipsClassesThatAreNotTargeted() {
+		AccessWidenerClassCache cache = new AccessWidenerClassCache(widener, 1024 * 1024, null);
+		assertThat(cache.transform("test/FinalClass", classBytes)).isSameAs(classBytes);
+	}
+
+	@Test
+	void testReusesResultFromMemory() {
+		AccessWidenerClassCache cache = new AccessWidenerClassCache(widener, 1024 * 1024, null);
+		byte[] transformed = cache.transform("test/PackagePrivateClass", classBytes);
+		assertThat(cache.transform("test/PackagePrivateClass", classBytes)).isNotSameAs(transformed).isEqualTo(transformed);
+	}
+
+	@Test
+	void testCallersCanModifyResult() {
+		AccessWidenerClassCache cache = new AccessWidenerClassCache(widener, 1024 * 1024, null);
+		byte[] transformed = cache.transform("test/PackagePrivateClass", classBytes);
+		byte[] expected = transformed.clone();
+		transformed[0] = 0;
+		assertThat(cache.transform("test/PackagePrivateClass", classBytes)).isEqualTo(expected);
+	}
+
+	@Test
+	void testEvictsWhenMemoryIsFull() {
+		AccessWidenerClassCache cache = new AccessWidenerClassCache(widener, 0, null);
+		byte[] transformed = cache.transform("test/PackagePrivateClass", classBytes);
+		assertThat(cache.transform("test/PackagePrivateClass", classBytes)).isNotSameAs(transformed).isEqualTo(transformed);
+	}
+
+	@Test
+	void testReusesResultFromDisk(@TempDir Path directory) throws IOException {
+		byte[] transformed = new AccessWidenerClassCache(widener, 0, directory).transform("test/PackagePrivateClass", classBytes);
+
+		try (Stream<Path> files = Files.walk(directory)) {
+			assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+		}
+
+		// Another cache with the same rules picks up the stored class
+		AccessWidener sameRules = new AccessWidener();
+		sameRules.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		assertThat(new AccessWidenerClassCache(sameRules, 0, directory).transform("test/PackagePrivateClass", classBytes))
+				.isEqualTo(transformed);
+
+		// Different rules for the class don't
+		AccessWidener otherRules = new AccessWidener();
+		otherRules.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		new AccessWidenerClassCache(otherRules, 0, directory).transform("test/PackagePrivateClass", classBytes);
+
+		try (Stream<Path> files = Files.walk(directory)) {
+			assertThat(files.filter(Files::isRegularFile)).hasSize(2);
+		}
+
+		// Neither do rules for other classes, which can affect the inner class attributes of the class
+		AccessWidener moreRules = new AccessWidener();
+		moreRules.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		moreRules.visitClass("test/FinalClass", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		new AccessWidenerClassCache(moreRules, 0, directory).transform("test/PackagePrivateClass", classBytes);
+
+		try (Stream<Path> files = Files.walk(directory)) {
+			assertThat(files.filter(Files::isRegularFile)).hasSize(3);
+		}
+	}
+}
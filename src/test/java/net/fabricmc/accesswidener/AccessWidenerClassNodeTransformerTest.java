@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+class AccessWidenerClassNodeTransformerTest {
+	AccessWidener widener = new AccessWidener();
+
+	@BeforeEach
+	void setUp() {
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitClass("test/SealedClass", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		widener.visitClass("test/PrivateInnerClass$Inner", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitField("test/FieldTests", "privateFinalIntField", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		widener.visitField("test/FieldTests", "privateFinalIntField", "I", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitMethod("test/MethodTests", "privateMethod", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitMethod("test/MethodTests", "<init>", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitMethod("test/PrivateMethodSubclassTest", "test", "()I", AccessWidenerReader.AccessType.EXTENDABLE, false);
+	}
+
+	@Test
+	void testMatchesClassVisitor() throws IOException {
+		String[] classNames = {
+				"test/PackagePrivateClass",
+				"test/SealedClass",
+				"test/PrivateInnerClass",
+				"test/PrivateInnerClass$Inner",
+				"test/FieldTests",
+				"test/MethodTests",
+				"test/PrivateMethodSubclassTest",
+				"test/FinalClass"
+		};
+
+		for (String className : classNames) {
+			ClassReader classReader = readClass(className);
+
+			ClassNode expected = new ClassNode();
+			classReader.accept(AccessWidenerClassVisitor.createClassVisitor(Opcodes.ASM9, expected, widener), 0);
+
+			ClassNode actual = new ClassNode();
+			classReader.accept(actual, 0);
+			AccessWidenerClassNodeTransformer.transform(actual, widener);
+
+			assertEquals(describe(expected), describe(actual), className);
+		}
+	}
+
+	/**
+	 * Newer compilers already use INVOKEVIRTUAL for private methods, so the INVOKESPECIAL calls are generated here.
+	 */
+	@Test
+	void testRewritesInvokeSpecialInPlace() {
+		ClassNode classNode = new ClassNode();
+		classNode.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/PrivateMethodSubclassTest", null, "java/lang/Object", null);
+		classNode.visitMethod(Opcodes.ACC_PRIVATE, "test", "()I", null, null);
+		MethodVisitor caller = classNode.visitMethod(Opcodes.ACC_PRIVATE, "caller", "()V", null, null);
+		caller.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		caller.visitMethodInsn(Opcodes.INVOKESPECIAL, "test/PrivateMethodSubclassTest", "test", "()I", false);
+		Handle handle = new Handle(Opcodes.H_INVOKESPECIAL, "test/PrivateMethodSubclassTest", "test", "()I", false);
+		caller.visitInvokeDynamicInsn("get", "()Ljava/util/function/Supplier;", handle, handle);
+		AbstractInsnNode[] instructions = classNode.methods.get(1).instructions.toArray();
+
+		AccessWidenerClassNodeTransformer.transform(classNode, widener);
+
+		assertThat(classNode.methods.get(1).instructions.toArray()).containsExactly(instructions);
+		assertEquals(Opcodes.INVOKESPECIAL, instructions[0].getOpcode());
+		assertEquals(Opcodes.INVOKEVIRTUAL, instructions[1].getOpcode());
+		Object[] bootstrapMethodArguments = ((InvokeDynamicInsnNode) instructions[2]).bsmArgs;
+		assertEquals(Opcodes.H_INVOKEVIRTUAL, ((Handle) bootstrapMethodArguments[0]).getTag());
+	}
+
+	private ClassReader readClass(String className) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("/" + className + ".class")) {
+			return new ClassReader(in);
+		}
+	}
+
+	/**
+	 * Describes everything about a class that the access widener can change.
+	 */
+	private static String describe(ClassNode classNode) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("class ").append(classNode.access).append(' ').append(classNode.permittedSubclasses).append('\n');
+
+		for (InnerClassNode innerClass : classNode.innerClasses) {
+			sb.append("inner ").append(innerClass.name).append(' ').append(innerClass.access).append('\n');
+		}
+
+		for (FieldNode field : classNode.fields) {
+			sb.append("field ").append(field.name).append(' ').append(field.access).append('\n');
+		}
+
+		for (MethodNode method : classNode.methods) {
+			sb.append("method ").append(method.name).append(method.desc).append(' ').append(method.access).append('\n');
+
+			for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+				if (insn instanceof MethodInsnNode) {
+					MethodInsnNode methodInsn = (MethodInsnNode) insn;
+					String opcode = methodInsn.getOpcode() == Opcodes.INVOKESPECIAL ? "INVOKESPECIAL"
+							: methodInsn.getOpcode() == Opcodes.INVOKEVIRTUAL ? "INVOKEVIRTUAL"
+							: String.valueOf(methodInsn.getOpcode());
+					sb.append("  ").append(opcode).append(' ').append(methodInsn.owner).append('.')
+							.append(methodInsn.name).append(methodInsn.desc).append('\n');
+				} else if (insn instanceof InvokeDynamicInsnNode) {
+					for (Object arg : ((InvokeDynamicInsnNode) insn).bsmArgs) {
+						if (arg instanceof Handle) {
+							sb.append("  HANDLE ").append(arg).append('\n');
+						}
+					}
+				}
+			}
+		}
+
+		return sb.toString();
+	}
+}
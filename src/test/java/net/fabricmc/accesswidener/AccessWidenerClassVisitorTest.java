@@ -26,15 +26,20 @@ import java.lang.reflect.Modifier;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.SimpleRemapper;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 import test.PrivateInnerClass;
 
 class AccessWidenerClassVisitorTest {
@@ -208,6 +213,44 @@ class AccessWidenerClassVisitorTest {
 		}
 	}
 
+	@Nested
+	class Remapping {
+		SimpleRemapper remapper;
+
+		@BeforeEach
+		void setUp() {
+			Map<String, String> mappings = new HashMap<>();
+			mappings.put("test/MethodTests", "remapped/RemappedMethodTests");
+			mappings.put("test/MethodTests.privateMethod()V", "remappedMethod");
+			remapper = new SimpleRemapper(mappings);
+
+			// The rules are written against the original names and remapped into the namespace of the output
+			AccessWidenerVisitor visitor = new AccessWidenerRemapper(widener, remapper, "original", "remapped");
+			visitor.visitHeader("original");
+			visitor.visitMethod("test/MethodTests", "privateMethod", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		}
+
+		@Test
+		void testRemapsAndWidensInOnePass() throws Exception {
+			ClassNode classNode = new ClassNode();
+			ClassVisitor visitor = AccessWidenerClassVisitor.createRemappingClassVisitor(Opcodes.ASM9, classNode, widener, remapper);
+
+			try (InputStream classData = getClass().getResourceAsStream("/test/MethodTests.class")) {
+				new ClassReader(classData).accept(visitor, 0);
+			}
+
+			assertEquals("remapped/RemappedMethodTests", classNode.name);
+			assertEquals("public final", Modifier.toString(classNode.access & ~Opcodes.ACC_SUPER));
+
+			MethodNode method = classNode.methods.stream()
+					.filter(m -> m.name.equals("remappedMethod"))
+					.findFirst()
+					.orElseThrow();
+			// Same result as widening the original class, see Methods#testMakeAccessible
+			assertEquals("public final", Modifier.toString(method.access));
+		}
+	}
+
 	/**
 	 * Applies a given access transformer but also ensures that the given class is the only class that is affected.
 	 */
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AccessWidenerDependencyGraphTest {
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void testComputesEffectiveAccessWideners() {
+		// app -> (left, right) -> base, and right -> plain (no access widener) -> deep
+		Map<String, AccessWidener> result = new AccessWidenerDependencyGraph("named")
+				.addNode("app", Arrays.asList("left", "right", "missing"), widener("accessible\tclass\tapp/Own"))
+				.addNode("left", Collections.singletonList("base"), widener("transitive-accessible\tclass\tleft/Exported", "accessible\tclass\tleft/Private"))
+				.addNode("right", Arrays.asList("base", "plain"))
+				.addNode("plain", Collections.singletonList("deep"))
+				.addNode("deep", Collections.emptyList(), widener("transitive-mutable\tfield\tdeep/Class\tfield\tI"))
+				.addNode("base", Collections.emptyList(), widener("transitive-extendable\tclass\tbase/Exported", "extendable\tclass\tbase/Private"))
+				.compute(executor);
+
+		assertThat(result).containsOnlyKeys("app", "left", "right", "plain", "deep", "base");
+		assertThat(result.get("app").getTargets()).containsExactlyInAnyOrder(
+				"app.Own", "left.Exported", "base.Exported", "deep.Class"
+		);
+		assertThat(result.get("left").getTargets()).containsExactlyInAnyOrder("left.Exported", "left.Private", "base.Exported");
+		assertThat(result.get("right").getTargets()).containsExactlyInAnyOrder("base.Exported", "deep.Class");
+		assertThat(result.get("base").getTargets()).containsExactlyInAnyOrder("base.Exported", "base.Private");
+		assertEquals(AccessWidener.FieldAccess.MUTABLE, result.get("app").getFieldAccess(new EntryTriple("deep/Class", "field", "I")));
+		assertEquals("named", result.get("app").getNamespace());
+	}
+
+	@Test
+	void testBuildsOnDependencies() {
+		// top -> (chain, side) -> base, where chain has more exporters than side
+		Map<String, AccessWidener> result = new AccessWidenerDependencyGraph("named")
+				.addNode("top", Arrays.asList("side", "chain"), widener("accessible\tclass\ttop/Own"))
+				.addNode("chain", Collections.singletonList("middle"), widener("transitive-accessible\tclass\tchain/Exported"))
+				.addNode("middle", Collections.singletonList("base"), widener("transitive-extendable\tclass\tbase/Exported"))
+				.addNode("side", Collections.singletonList("base"), widener("transitive-accessible\tclass\tside/Exported"))
+				.addNode("base", Collections.emptyList(), widener("transitive-accessible\tclass\tbase/Exported"))
+				.compute(executor);
+
+		AccessWidener top = result.get("top");
+		assertThat(top.getTargets()).containsExactlyInAnyOrder(
+				"top.Own", "chain.Exported", "side.Exported", "base.Exported"
+		);
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE_EXTENDABLE, top.getClassAccess("base/Exported"));
+		assertEquals("named", top.getNamespace());
+		// The entries of the dependencies are layered below the own entries instead of being copied
+		assertThat(top.classAccess).isInstanceOf(LayeredMap.class);
+		assertThat(result.get("base").getTargets()).containsExactly("base.Exported");
+	}
+
+	@Test
+	void testBoundsLayerDepth() {
+		// A chain of mods, each depending on the previous one
+		AccessWidenerDependencyGraph graph = new AccessWidenerDependencyGraph("named");
+		int length = AccessWidenerDependencyGraph.MAX_DEPTH * 3;
+
+		for (int i = 0; i < length; i++) {
+			graph.addNode("mod" + i, i > 0 ? Collections.singletonList("mod" + (i - 1)) : Collections.emptyList(),
+					widener("transitive-accessible\tclass\tmod/Class" + i));
+		}
+
+		Map<String, AccessWidener> result = graph.compute(executor);
+
+		for (int i = 0; i < length; i++) {
+			AccessWidener accessWidener = result.get("mod" + i);
+			assertThat(accessWidener.depth).isLessThanOrEqualTo(AccessWidenerDependencyGraph.MAX_DEPTH);
+			assertThat(accessWidener.getTargets()).hasSize(i + 1);
+			assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, accessWidener.getClassAccess("mod/Class0"));
+		}
+	}
+
+	@Test
+	void testRejectsCycles() {
+		AccessWidenerDependencyGraph graph = new AccessWidenerDependencyGraph("named")
+				.addNode("a", Collections.singletonList("b"))
+				.addNode("b", Collections.singletonList("a"));
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> graph.compute(executor));
+		assertThat(e).hasMessageContaining("Dependency cycle");
+	}
+
+	@Test
+	void testRejectsOtherNamespace() {
+		AccessWidenerDependencyGraph graph = new AccessWidenerDependencyGraph("intermediary")
+				.addNode("a", Collections.emptyList(), widener("accessible\tclass\ta/Class"));
+
+		assertThrows(AccessWidenerFormatException.class, () -> graph.compute(executor));
+	}
+
+	private static byte[] widener(String... lines) {
+		return ("accessWidener\tv2\tnamed\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+}
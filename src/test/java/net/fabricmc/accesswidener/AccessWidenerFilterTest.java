@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class AccessWidenerFilterTest {
+	@Test
+	void testWithoutConditionsKeepsEverything() {
+		assertEquals(
+				"accessWidener\tv2\tns\n"
+						+ "accessible\tclass\ta/b/Class\n"
+						+ "transitive-extendable\tclass\ta/bc/Class\n"
+						+ "transitive-accessible\tmethod\ta/b/c/Class\tmethod\t()V\n"
+						+ "mutable\tfield\ta/b/Class\tfield\tI\n"
+						+ "transitive-accessible\tfield\tx/Class\tfield\tI\n",
+				filter(new AccessWidenerFilter.Builder())
+		);
+	}
+
+	@Test
+	void testTransitiveOnlyMatchesTransitiveOnlyFilter() {
+		AccessWidenerWriter expected = new AccessWidenerWriter();
+		accept(new TransitiveOnlyFilter(expected));
+
+		assertEquals(expected.writeString(), filter(new AccessWidenerFilter.Builder().transitiveOnly()));
+	}
+
+	@Test
+	void testKindsAndAccessTypes() {
+		assertEquals(
+				"accessWidener\tv2\tns\n"
+						+ "transitive-accessible\tfield\tx/Class\tfield\tI\n",
+				filter(new AccessWidenerFilter.Builder()
+						.kinds(EntryBatch.Kind.FIELD)
+						.accessTypes(AccessWidenerReader.AccessType.ACCESSIBLE))
+		);
+	}
+
+	@Test
+	void testOwnersAndPackages() {
+		assertEquals(
+				"accessWidener\tv2\tns\n"
+						+ "accessible\tclass\ta/b/Class\n"
+						+ "transitive-accessible\tmethod\ta/b/c/Class\tmethod\t()V\n"
+						+ "mutable\tfield\ta/b/Class\tfield\tI\n"
+						+ "transitive-accessible\tfield\tx/Class\tfield\tI\n",
+				filter(new AccessWidenerFilter.Builder().packages("a/b").owners("x/Class"))
+		);
+	}
+
+	@Test
+	void testNamePattern() {
+		assertEquals(
+				"accessWidener\tv2\tns\n"
+						+ "mutable\tfield\ta/b/Class\tfield\tI\n"
+						+ "transitive-accessible\tfield\tx/Class\tfield\tI\n",
+				filter(new AccessWidenerFilter.Builder().namePattern(Pattern.compile("f.*")))
+		);
+	}
+
+	@Test
+	void testBatchesAreFilteredLikeEntries() {
+		AccessWidenerFilter.Builder builder = new AccessWidenerFilter.Builder().transitiveOnly().packages("a");
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		RecordingVisitor recording = new RecordingVisitor();
+		accept(recording);
+		EntryBatch batch = new EntryBatch();
+		recording.accept(new AccessWidenerVisitor() {
+			@Override
+			public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+				batch.addClass(name, access, transitive);
+			}
+
+			@Override
+			public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				batch.addMethod(owner, name, descriptor, access, transitive);
+			}
+
+			@Override
+			public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				batch.addField(owner, name, descriptor, access, transitive);
+			}
+		});
+
+		AccessWidenerFilter filter = builder.build(writer);
+		filter.visitHeader("ns");
+		filter.visitBatch(batch);
+
+		assertEquals(filter(builder), writer.writeString());
+	}
+
+	private static String filter(AccessWidenerFilter.Builder builder) {
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		accept(builder.build(writer));
+		return writer.writeString();
+	}
+
+	private static void accept(AccessWidenerVisitor visitor) {
+		visitor.visitHeader("ns");
+		visitor.visitClass("a/b/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitClass("a/bc/Class", AccessWidenerReader.AccessType.EXTENDABLE, true);
+		visitor.visitMethod("a/b/c/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+		visitor.visitField("a/b/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		visitor.visitField("x/Class", "field", "I", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+class AccessWidenerMultiRemapperTest {
+	SimpleRemapper namedRemapper = createRemapper("named");
+	SimpleRemapper officialRemapper = createRemapper("official");
+
+	@Test
+	void testRemapsToEveryTarget() {
+		AccessWidenerWriter namedWriter = new AccessWidenerWriter();
+		AccessWidenerWriter officialWriter = new AccessWidenerWriter();
+		accept(new AccessWidenerMultiRemapper("intermediary")
+				.addTarget(namedWriter, namedRemapper, "named")
+				.addTarget(officialWriter, officialRemapper, "official"));
+
+		// Same result as remapping to each namespace separately
+		AccessWidenerWriter expectedNamed = new AccessWidenerWriter();
+		accept(new AccessWidenerRemapper(expectedNamed, namedRemapper, "intermediary", "named"));
+		AccessWidenerWriter expectedOfficial = new AccessWidenerWriter();
+		accept(new AccessWidenerRemapper(expectedOfficial, officialRemapper, "intermediary", "official"));
+
+		assertEquals(expectedNamed.writeString(), namedWriter.writeString());
+		assertEquals(expectedOfficial.writeString(), officialWriter.writeString());
+		assertThat(namedWriter.writeString()).contains("accessible\tmethod\tnamed/Class\tnamedMethod\t(Lnamed/Class;[[Lb/Unmapped;I)Lnamed/Class;\n");
+	}
+
+	@Test
+	void testRejectsUnexpectedNamespace() {
+		AccessWidenerMultiRemapper remapper = new AccessWidenerMultiRemapper("intermediary");
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> remapper.visitHeader("named"));
+		assertThat(e).hasMessageContaining("Cannot remap access widener from namespace 'named'");
+	}
+
+	@Test
+	void testSplitsDescriptorsOnce() {
+		List<String> split = new ArrayList<>();
+		List<String> mapped = new ArrayList<>();
+		// Descriptors are only remapped from the split class names, never parsed by the remappers themselves
+		SimpleRemapper remapper = new SimpleRemapper(Map.of("a/Class", "named/Class")) {
+			@Override
+			public String map(String key) {
+				mapped.add(key);
+				return super.map(key);
+			}
+
+			@Override
+			public String mapDesc(String descriptor) {
+				throw new AssertionError("Descriptor parsed again: " + descriptor);
+			}
+
+			@Override
+			public String mapMethodDesc(String descriptor) {
+				throw new AssertionError("Descriptor parsed again: " + descriptor);
+			}
+		};
+		AccessWidenerMultiRemapper multiRemapper = new AccessWidenerMultiRemapper("intermediary", descriptor -> {
+			split.add(descriptor);
+			return AccessWidenerMultiRemapper.splitDescriptor(descriptor);
+		});
+
+		for (int i = 0; i < 3; i++) {
+			multiRemapper.addTarget(new AccessWidenerWriter(), remapper, "named");
+		}
+
+		multiRemapper.visitHeader("intermediary");
+		multiRemapper.visitMethod("a/Class", "method", "(La/Class;[[Lb/Unmapped;I)La/Class;", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		assertThat(split).containsExactly("(La/Class;[[Lb/Unmapped;I)La/Class;");
+		// The owner and the three class names of the descriptor for every target, besides the member names
+		assertThat(mapped).filteredOn(key -> key.indexOf('.') < 0).hasSize(3 * 4);
+	}
+
+	@Test
+	void testSplitDescriptor() {
+		assertArrayEquals(new String[] {"(IJ)V"}, AccessWidenerMultiRemapper.splitDescriptor("(IJ)V"));
+		assertArrayEquals(new String[] {"L", "a/LClass", ";"}, AccessWidenerMultiRemapper.splitDescriptor("La/LClass;"));
+		assertArrayEquals(
+				new String[] {"(L", "a/B", ";[L", "c/D", ";)L", "e/F", ";"},
+				AccessWidenerMultiRemapper.splitDescriptor("(La/B;[Lc/D;)Le/F;")
+		);
+	}
+
+	private static SimpleRemapper createRemapper(String namespace) {
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put("a/Class", namespace + "/Class");
+		mappings.put("a/Class.method(La/Class;[[Lb/Unmapped;I)La/Class;", namespace + "Method");
+		mappings.put("a/Class.field", namespace + "Field");
+		return new SimpleRemapper(mappings);
+	}
+
+	private static void accept(AccessWidenerVisitor visitor) {
+		visitor.visitHeader("intermediary");
+		visitor.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitMethod("a/Class", "method", "(La/Class;[[Lb/Unmapped;I)La/Class;", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+		visitor.visitField("a/Class", "field", "La/Class;", AccessWidenerReader.AccessType.MUTABLE, false);
+		visitor.visitField("a/Class", "other", "J", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+class AccessWidenerPrefetcherTest {
+	AccessWidener widener = new AccessWidener();
+	List<String> requestedClasses = new ArrayList<>();
+	Queue<Runnable> tasks = new ArrayDeque<>();
+	AccessWidenerPrefetcher prefetcher = new AccessWidenerPrefetcher(widener, this::readClass, tasks::add);
+
+	@Test
+	void testTransformsTargetsOuterClassesFirst() {
+		widener.visitClass("test/PrivateInnerClass$Inner", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		prefetcher.start();
+		runTasks();
+
+		assertThat(requestedClasses).containsExactly("test/PrivateInnerClass", "test/PackagePrivateClass", "test/PrivateInnerClass$Inner");
+
+		byte[] transformed = prefetcher.take("test/PackagePrivateClass");
+		assertThat(new ClassReader(transformed).getAccess() & Opcodes.ACC_PUBLIC).isNotZero();
+		// Results are only handed out once
+		assertThat(prefetcher.take("test/PackagePrivateClass")).isNull();
+	}
+
+	@Test
+	void testLeavesQueuedClassesToTheCaller() {
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		prefetcher.start();
+
+		assertThat(prefetcher.take("test/PackagePrivateClass")).isNull();
+		// The background task doesn't repeat the work anymore
+		runTasks();
+		assertThat(requestedClasses).isEmpty();
+	}
+
+	@Test
+	void testCloseDiscardsResults() {
+		widener.visitClass("test/PrivateInnerClass$Inner", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitClass("test/PackagePrivateClass", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		prefetcher.start();
+		// Only the first class is transformed before closing
+		tasks.poll().run();
+		prefetcher.close();
+		runTasks();
+
+		assertThat(requestedClasses).containsExactly("test/PrivateInnerClass");
+		assertThat(prefetcher.take("test/PrivateInnerClass")).isNull();
+		assertThat(prefetcher.take("test/PackagePrivateClass")).isNull();
+		assertThrows(IllegalStateException.class, prefetcher::start);
+	}
+
+	@Test
+	void testIgnoresClassesThatAreNotTargeted() {
+		prefetcher.start();
+		assertThat(tasks).isEmpty();
+		assertThat(prefetcher.take("test/PackagePrivateClass")).isNull();
+	}
+
+	private void runTasks() {
+		Runnable task;
+
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	private byte[] readClass(String className) {
+		requestedClasses.add(className);
+
+		try (InputStream in = getClass().getResourceAsStream("/" + className + ".class")) {
+			return in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
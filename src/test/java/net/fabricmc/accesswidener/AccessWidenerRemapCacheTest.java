@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+class AccessWidenerRemapCacheTest {
+	static final byte[] INPUT = "accessWidener\tv1\tintermediary\naccessible\tclass\ta/Class\n".getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	Path directory;
+	int loadedMappings;
+
+	@Test
+	void testOnlyLoadsMappingsOnce() {
+		AccessWidenerRemapCache cache = new AccessWidenerRemapCache(directory);
+		byte[] first = cache.remap(INPUT, "mappings-1", "intermediary", "named", () -> loadMappings("x/Y"));
+		// A fresh instance, like a later build, is served from the directory
+		byte[] second = new AccessWidenerRemapCache(directory).remap(INPUT, "mappings-1", "intermediary", "named", () -> loadMappings("x/Y"));
+
+		assertEquals("accessWidener\tv1\tnamed\naccessible\tclass\tx/Y\n", new String(first, StandardCharsets.UTF_8));
+		assertEquals(new String(first, StandardCharsets.UTF_8), new String(second, StandardCharsets.UTF_8));
+		assertEquals(1, loadedMappings);
+	}
+
+	@Test
+	void testDistinguishesMappingsAndNamespaces() {
+		AccessWidenerRemapCache cache = new AccessWidenerRemapCache(directory);
+		cache.remap(INPUT, "mappings-1", "intermediary", "named", () -> loadMappings("x/Y"));
+		byte[] otherMappings = cache.remap(INPUT, "mappings-2", "intermediary", "named", () -> loadMappings("z/W"));
+		byte[] otherNamespace = cache.remap(INPUT, "mappings-1", "intermediary", "official", () -> loadMappings("z/W"));
+
+		assertEquals("accessWidener\tv1\tnamed\naccessible\tclass\tz/W\n", new String(otherMappings, StandardCharsets.UTF_8));
+		assertEquals("accessWidener\tv1\tofficial\naccessible\tclass\tz/W\n", new String(otherNamespace, StandardCharsets.UTF_8));
+		assertEquals(3, loadedMappings);
+	}
+
+	private Remapper loadMappings(String mappedName) {
+		loadedMappings++;
+		return new SimpleRemapper(Collections.singletonMap("a/Class", mappedName));
+	}
+}
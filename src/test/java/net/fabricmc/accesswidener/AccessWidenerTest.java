@@ -19,9 +19,16 @@ package net.fabricmc.accesswidener;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
 
 public class AccessWidenerTest {
 	AccessWidener widener = new AccessWidener();
@@ -63,4 +70,259 @@ public class AccessWidenerTest {
 		assertThat(widener.getTargets()).containsOnly("a.b.C");
 		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, widener.getClassAccess("a/b/C"));
 	}
+
+	@Test
+	void testClassFingerprintsDoNotDependOnRuleOrder() {
+		AccessWidener other = new AccessWidener();
+		widener.visitClass("a/B", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitMethod("a/B", "m", "()V", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		widener.visitField("a/C", "f", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		other.visitField("a/C", "f", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		other.visitMethod("a/B", "m", "()V", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		other.visitClass("a/B", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		assertThat(widener.getClassFingerprints())
+				.containsOnlyKeys("a/B", "a/C")
+				.isEqualTo(other.getClassFingerprints());
+	}
+
+	@Test
+	void testClassFingerprintsOnlyChangeForAffectedClasses() {
+		widener.visitMethod("a/B", "m", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitField("a/C", "f", "I", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		Map<String, Long> before = widener.getClassFingerprints();
+
+		widener.visitField("a/C", "f", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		Map<String, Long> after = widener.getClassFingerprints();
+
+		assertEquals(before.get("a/B"), after.get("a/B"));
+		assertNotEquals(before.get("a/C"), after.get("a/C"));
+	}
+
+	@Test
+	void testFingerprintIsMaintainedAsRulesChange() {
+		assertEquals(0L, widener.getFingerprint());
+
+		widener.visitClass("a/B", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		long classOnly = widener.getFingerprint();
+		assertNotEquals(0L, classOnly);
+		assertEquals(widener.getClassFingerprints().get("a/B"), widener.getClassFingerprint("a/B"));
+
+		// Duplicate rules don't change anything
+		widener.visitClass("a/B", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		assertEquals(classOnly, widener.getFingerprint());
+
+		widener.visitField("a/C", "f", "I", AccessWidenerReader.AccessType.MUTABLE, true);
+		assertNotEquals(classOnly, widener.getFingerprint());
+		assertEquals(0L, widener.getClassFingerprint("x/Untargeted"));
+
+		// Without nested classes, the fingerprint of the whole access widener is the sum of its classes
+		long sum = widener.getClassFingerprints().values().stream().mapToLong(Long::longValue).sum();
+		assertEquals(sum, widener.getFingerprint());
+
+		AccessWidener other = new AccessWidener();
+		other.visitField("a/C", "f", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		other.visitClass("a/B", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		assertEquals(widener.getFingerprint(), other.getFingerprint());
+		assertEquals(widener.getFingerprint(), new AccessWidener(other).getFingerprint());
+	}
+
+	/**
+	 * The access of nested classes is applied to the inner class attributes of their outer classes, so the outer
+	 * classes need to be transformed again when it changes.
+	 */
+	@Test
+	void testClassFingerprintsIncludeNestedClasses() {
+		widener.visitField("a/B$C", "f", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		Map<String, Long> before = widener.getClassFingerprints();
+		assertThat(before).containsEntry("a/B", 0L);
+
+		widener.visitClass("a/B$C", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		Map<String, Long> after = widener.getClassFingerprints();
+		assertNotEquals(before.get("a/B"), after.get("a/B"));
+		assertNotEquals(before.get("a/B$C"), after.get("a/B$C"));
+	}
+
+	@Test
+	void testRemap() {
+		widener.visitHeader("original");
+		widener.visitClass("a/Class$Inner", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		widener.visitMethod("a/Class", "method", "(La/Class;)V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitField("a/Class", "field", "La/Class;", AccessWidenerReader.AccessType.MUTABLE, false);
+		widener.visitField("b/Unmapped", "field", "I", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put("a/Class", "x/Y");
+		mappings.put("a/Class$Inner", "x/Y$Z");
+		mappings.put("a/Class.method(La/Class;)V", "remappedMethod");
+		mappings.put("a/Class.field", "remappedField");
+		AccessWidener remapped = widener.remap(new SimpleRemapper(mappings), "named");
+
+		assertEquals("named", remapped.getNamespace());
+		assertThat(remapped.getTargets()).containsExactly("x.Y$Z", "x.Y", "b.Unmapped");
+		assertThat(remapped.classAccess).containsOnly(
+				entry("x/Y$Z", AccessWidener.ClassAccess.EXTENDABLE),
+				entry("x/Y", AccessWidener.ClassAccess.ACCESSIBLE),
+				entry("b/Unmapped", AccessWidener.ClassAccess.ACCESSIBLE)
+		);
+		assertThat(remapped.methodAccess).containsOnly(
+				entry(new EntryTriple("x/Y", "remappedMethod", "(Lx/Y;)V"), AccessWidener.MethodAccess.ACCESSIBLE)
+		);
+		assertThat(remapped.fieldAccess).containsOnly(
+				entry(new EntryTriple("x/Y", "remappedField", "Lx/Y;"), AccessWidener.FieldAccess.MUTABLE),
+				entry(new EntryTriple("b/Unmapped", "field", "I"), AccessWidener.FieldAccess.ACCESSIBLE)
+		);
+		// The original is left alone
+		assertThat(widener.getTargets()).containsExactly("a.Class$Inner", "a.Class", "b.Unmapped");
+	}
+
+	@Test
+	void testRemapMergesEntriesThatEndUpWithTheSameName() {
+		widener.visitField("a/Class", "first", "I", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitField("a/Class", "second", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put("a/Class.first", "field");
+		mappings.put("a/Class.second", "field");
+		AccessWidener remapped = widener.remap(new SimpleRemapper(mappings), "named");
+
+		assertThat(remapped.fieldAccess).containsOnly(
+				entry(new EntryTriple("a/Class", "field", "I"), AccessWidener.FieldAccess.ACCESSIBLE_MUTABLE)
+		);
+	}
+
+	@Test
+	void testDerivedAccessWidenerSharesParentRules() {
+		widener.visitHeader("named");
+		widener.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		AccessWidener derived = new AccessWidener(widener);
+		derived.visitHeader("named");
+		derived.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		derived.visitField("b/Class$Inner", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE_EXTENDABLE, derived.getClassAccess("a/Class"));
+		assertEquals(AccessWidener.MethodAccess.ACCESSIBLE_EXTENDABLE, derived.getMethodAccess(new EntryTriple("a/Class", "method", "()V")));
+		assertEquals(AccessWidener.FieldAccess.MUTABLE, derived.getFieldAccess(new EntryTriple("b/Class$Inner", "field", "I")));
+		assertThat(derived.getTargets()).containsExactly("a.Class", "b.Class$Inner", "b.Class");
+		assertThat(derived.methodAccess).hasSize(1);
+
+		// The parent is left alone
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, widener.getClassAccess("a/Class"));
+		assertEquals(AccessWidener.MethodAccess.ACCESSIBLE, widener.getMethodAccess(new EntryTriple("a/Class", "method", "()V")));
+		assertThat(widener.getTargets()).containsExactly("a.Class");
+		assertThat(widener.fieldAccess).isEmpty();
+
+		// Derived access wideners behave like a copy
+		AccessWidener copy = new AccessWidener();
+		copy.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		copy.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		copy.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		copy.visitField("b/Class$Inner", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		assertEquals(copy.getClassFingerprints(), derived.getClassFingerprints());
+	}
+
+	@Test
+	void testDerivedAccessWidenerRemovesTargets() {
+		widener.visitClass("a/B", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		widener.visitClass("a/C", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		AccessWidener derived = new AccessWidener(widener);
+		derived.visitClass("a/D", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		derived.classAccess.remove("a/B");
+		derived.removeTarget("a/B");
+		assertThat(derived.getTargets()).containsExactly("a.C", "a.D").hasSize(2);
+		assertThat(derived.isTarget("a/B")).isFalse();
+		assertThat(derived.classAccess).hasSize(2).containsOnlyKeys("a/C", "a/D");
+		assertThat(widener.getTargets()).containsExactly("a.B", "a.C");
+
+		// Adding it again shows it at its position in the parent
+		derived.visitClass("a/B", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		assertThat(derived.getTargets()).containsExactly("a.B", "a.C", "a.D");
+		assertThat(derived.classAccess).hasSize(3);
+	}
+
+	@Test
+	void testReadLazily() {
+		byte[] content = ("accessWidener\tv2\tnamed\n"
+				+ "# comment\n"
+				+ "accessible\tclass\ta/B\n"
+				+ "transitive-accessible\tmethod\ta/B\tm\t()V # comment\r\n"
+				+ "\n"
+				+ "mutable\tfield\ta/C$D\tf\tI\n").getBytes(StandardCharsets.UTF_8);
+		widener.readLazily(content, "named");
+
+		assertEquals("named", widener.getNamespace());
+		assertThat(widener.getTargets()).containsExactly("a.B", "a.C$D", "a.C");
+		assertThat(widener.classAccess).isEmpty();
+
+		assertEquals(AccessWidener.MethodAccess.ACCESSIBLE, widener.getMethodAccess(new EntryTriple("a/B", "m", "()V")));
+		assertThat(widener.classAccess).containsOnlyKeys("a/B");
+		assertThat(widener.fieldAccess).isEmpty();
+
+		AccessWidener eager = new AccessWidener();
+		new AccessWidenerReader(eager).read(content);
+		assertEquals(eager.getClassFingerprints(), widener.getClassFingerprints());
+		assertEquals(AccessWidener.FieldAccess.MUTABLE, widener.getFieldAccess(new EntryTriple("a/C$D", "f", "I")));
+	}
+
+	@Test
+	void testClassFingerprintOnlyReadsNestedClasses() {
+		byte[] content = ("accessWidener\tv2\tnamed\n"
+				+ "accessible\tclass\ta/B\n"
+				+ "extendable\tclass\ta/B$C\n"
+				+ "accessible\tmethod\ta/B$C\tm\t()V\n"
+				+ "accessible\tclass\ta/BC\n").getBytes(StandardCharsets.UTF_8);
+		widener.readLazily(content, "named");
+		AccessWidener eager = new AccessWidener();
+		new AccessWidenerReader(eager).read(content);
+
+		assertEquals(eager.getClassFingerprint("a/B"), widener.getClassFingerprint("a/B"));
+		assertThat(widener.classAccess).containsOnlyKeys("a/B", "a/B$C");
+		assertThat(widener.methodAccess).hasSize(1);
+	}
+
+	@Test
+	void testLoadedClassesAreLookedUpWithoutLock() {
+		// Only lazily read access wideners need concurrent rules
+		assertThat(widener.classAccess).isInstanceOf(HashMap.class);
+		widener.readLazily("accessWidener\tv2\tnamed\naccessible\tclass\ta/B\nmutable\tfield\ta/C\tf\tI\n".getBytes(StandardCharsets.UTF_8), null);
+		assertThat(widener.classAccess).isInstanceOf(ConcurrentHashMap.class);
+		LazyRules lazyRules = widener.lazyRules;
+
+		assertThat(lazyRules.isLoaded("a/B")).isFalse();
+		assertThat(lazyRules.isLoaded("a/Other")).isTrue();
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, widener.getClassAccess("a/B"));
+		assertThat(lazyRules.isLoaded("a/B")).isTrue();
+		assertThat(lazyRules.isLoaded("a/C")).isFalse();
+
+		// The rules of derived access wideners can't be read while other classes are loaded
+		AccessWidener derived = new AccessWidener(widener);
+		derived.readLazily("accessWidener\tv2\tnamed\naccessible\tclass\ta/D\n".getBytes(StandardCharsets.UTF_8), null);
+		assertThat(derived.lazyRules.isLoaded("a/Other")).isFalse();
+	}
+
+	@Test
+	void testReadLazilyReportsErrorsOnLookup() {
+		byte[] content = ("accessWidener\tv2\tnamed\n"
+				+ "accessible\tclass\ta/B\n"
+				+ "mutable\tclass\ta/C\n"
+				+ "accessible\tmethod\ta/C\tm\t()V\n").getBytes(StandardCharsets.UTF_8);
+		widener.readLazily(content, null);
+
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, widener.getClassAccess("a/B"));
+		AccessWidenerFormatException e = assertThrows(AccessWidenerFormatException.class, () -> widener.getClassAccess("a/C"));
+		assertEquals(3, e.getLineNumber());
+		// The class keeps failing, its entries after the bad line aren't silently dropped
+		e = assertThrows(AccessWidenerFormatException.class, () -> widener.getMethodAccess(new EntryTriple("a/C", "m", "()V")));
+		assertEquals(3, e.getLineNumber());
+		assertThrows(AccessWidenerFormatException.class, widener::getFingerprint);
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, widener.getClassAccess("a/B"));
+
+		// Lines without an owner can't be deferred
+		byte[] malformed = "accessWidener\tv2\tnamed\naccessible\tclass\n".getBytes(StandardCharsets.UTF_8);
+		e = assertThrows(AccessWidenerFormatException.class, () -> new AccessWidener().readLazily(malformed, null));
+		assertEquals(2, e.getLineNumber());
+	}
 }
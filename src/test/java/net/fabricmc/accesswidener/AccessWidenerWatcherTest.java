@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccessWidenerWatcherTest {
+	ExecutorService executor = Executors.newSingleThreadExecutor();
+	BlockingQueue<Set<String>> changes = new LinkedBlockingQueue<>();
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testReportsChangedClasses() throws Exception {
+		Path a = directory.resolve("a.accesswidener");
+		Path b = directory.resolve("b.accesswidener");
+		write(a, "accessible\tclass\ta/A", "accessible\tclass\ta/Other");
+		write(b, "accessible\tclass\tb/B");
+
+		try (AccessWidenerWatcher watcher = new AccessWidenerWatcher(executor, "named", 50)) {
+			watcher.addListener(changes::add);
+			assertThat(watcher.watch(a)).containsExactlyInAnyOrder("a/A", "a/Other");
+			assertThat(watcher.watch(b)).containsExactly("b/B");
+
+			write(a, "extendable\tclass\ta/A", "accessible\tclass\ta/Other");
+			assertThat(changes.poll(10, TimeUnit.SECONDS)).containsExactly("a/A");
+			assertEquals(AccessWidener.ClassAccess.EXTENDABLE, watcher.getAccessWidener().getClassAccess("a/A"));
+
+			Files.delete(b);
+			assertThat(changes.poll(10, TimeUnit.SECONDS)).containsExactly("b/B");
+			assertThat(watcher.getAccessWidener().getTargets()).containsExactlyInAnyOrder("a.A", "a.Other");
+		}
+	}
+
+	@Test
+	void testKeepsPreviousVersionOfBrokenFile() throws Exception {
+		Path a = directory.resolve("a.accesswidener");
+		write(a, "accessible\tclass\ta/A");
+		BlockingQueue<Path> errors = new LinkedBlockingQueue<>();
+
+		try (AccessWidenerWatcher watcher = new AccessWidenerWatcher(executor, "named", 50)) {
+			watcher.addListener(new AccessWidenerWatcher.Listener() {
+				@Override
+				public void onChange(Set<String> classes) {
+					changes.add(classes);
+				}
+
+				@Override
+				public void onError(Path file, Exception e) {
+					errors.add(file);
+				}
+			});
+			watcher.watch(a);
+
+			write(a, "accessible\tclass\ta/A", "broken");
+			assertEquals(a.toAbsolutePath().normalize(), errors.poll(10, TimeUnit.SECONDS));
+			assertThat(watcher.getAccessWidener().getTargets()).containsExactly("a.A");
+
+			write(a, "accessible\tclass\ta/B");
+			assertThat(changes.poll(10, TimeUnit.SECONDS)).containsExactlyInAnyOrder("a/A", "a/B");
+		}
+	}
+
+	@Test
+	void testPublishesNewAccessWidenerAndSurvivesFailingListener() throws Exception {
+		Path a = directory.resolve("a.accesswidener");
+		write(a, "accessible\tclass\ta/A");
+		BlockingQueue<Path> errors = new LinkedBlockingQueue<>();
+
+		try (AccessWidenerWatcher watcher = new AccessWidenerWatcher(executor, "named", 50)) {
+			watcher.addListener(new AccessWidenerWatcher.Listener() {
+				@Override
+				public void onChange(Set<String> classes) {
+					changes.add(classes);
+					throw new IllegalStateException("broken listener");
+				}
+
+				@Override
+				public void onError(Path file, Exception e) {
+					// The queue doesn't take null, use a placeholder for failures of onChange
+					errors.add(file != null ? file : directory);
+				}
+			});
+			watcher.watch(a);
+			AccessWidener before = watcher.getAccessWidener();
+
+			write(a, "extendable\tclass\ta/A");
+			assertThat(changes.poll(10, TimeUnit.SECONDS)).containsExactly("a/A");
+			assertEquals(directory, errors.poll(10, TimeUnit.SECONDS));
+
+			// Earlier access wideners are left as they were
+			assertEquals(AccessWidener.ClassAccess.ACCESSIBLE, before.getClassAccess("a/A"));
+			assertEquals(AccessWidener.ClassAccess.EXTENDABLE, watcher.getAccessWidener().getClassAccess("a/A"));
+
+			// The watcher keeps running after the listener threw
+			write(a, "extendable\tclass\ta/B");
+			assertThat(changes.poll(10, TimeUnit.SECONDS)).containsExactlyInAnyOrder("a/A", "a/B");
+		}
+	}
+
+	private static void write(Path file, String... lines) throws Exception {
+		Files.write(file, ("accessWidener\tv2\tnamed\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+}
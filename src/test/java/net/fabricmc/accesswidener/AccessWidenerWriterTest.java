@@ -20,9 +20,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Objects;
@@ -68,6 +72,74 @@ class AccessWidenerWriterTest {
 				+ "extendable\tclass\tSomeClass\n", writer.writeString());
 	}
 
+	@Test
+	void testCanonicalMergesAndSortsEntries() {
+		AccessWidenerWriter writer = new AccessWidenerWriter().canonicalize();
+		writer.visitHeader("ns1");
+		writer.visitField("b/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		writer.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		writer.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+		writer.visitClass("a/Class$Inner", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		writer.visitClass("a/Class$Inner", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		writer.visitClass("b/Class", AccessWidenerReader.AccessType.EXTENDABLE, true);
+		writer.visitClass("b/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		writer.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		writer.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		writer.visitField("b/Class", "field", "I", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+		writer.visitField("b/Class", "field", "I", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		assertEquals("accessWidener\tv2\tns1\n"
+				+ "accessible\tclass\ta/Class\n"
+				+ "transitive-accessible\tmethod\ta/Class\tmethod\t()V\n"
+				+ "extendable\tclass\ta/Class$Inner\n"
+				+ "transitive-extendable\tclass\tb/Class\n"
+				+ "transitive-accessible\tfield\tb/Class\tfield\tI\n"
+				+ "mutable\tfield\tb/Class\tfield\tI\n", writer.writeString());
+	}
+
+	@Test
+	void testCanonicalOutputIsStable() {
+		AccessWidenerWriter writer = new AccessWidenerWriter().canonicalize();
+		accept(writer, true);
+		String output = writer.writeString();
+
+		// Visiting everything again adds nothing, and neither does reading the canonical output back in
+		accept(writer, true);
+		new AccessWidenerReader(writer).read(output.getBytes(StandardCharsets.UTF_8));
+		assertEquals(output, writer.writeString());
+
+		AccessWidener accessWidener = new AccessWidener();
+		accept(accessWidener, true);
+		AccessWidener reread = new AccessWidener();
+		new AccessWidenerReader(reread).read(output.getBytes(StandardCharsets.UTF_8));
+		assertEquals(accessWidener.getClassFingerprints(), reread.getClassFingerprints());
+	}
+
+	@Test
+	void testCanonicalStreamsOnFlush() {
+		StringWriter output = new StringWriter();
+		AccessWidenerWriter writer = new AccessWidenerWriter(2, output).canonicalize();
+		writer.visitHeader("ns1");
+		writer.visitClass("b/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		writer.visitClass("a/Class", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		writer.flush();
+
+		assertEquals("accessWidener\tv2\tns1\n"
+				+ "extendable\tclass\ta/Class\n"
+				+ "accessible\tclass\tb/Class\n", output.toString());
+
+		// Another block of entries would make the output non-canonical
+		assertThrows(IllegalStateException.class, writer::flush);
+		assertThrows(IllegalStateException.class, () -> writer.visitClass("c/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false));
+	}
+
+	@Test
+	void testCanonicalizeAfterHeaderThrows() {
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		writer.visitHeader("ns1");
+		assertThrows(IllegalStateException.class, writer::canonicalize);
+	}
+
 	@Test
 	void testDoesNotAllowDifferentNamespacesWhenMerging() {
 		AccessWidenerWriter writer = new AccessWidenerWriter();
@@ -83,6 +155,49 @@ class AccessWidenerWriterTest {
 		assertThat(e).hasMessageContaining("Cannot write transitive rule in version 1");
 	}
 
+	@Test
+	void testStreamToWriter() throws Exception {
+		StringWriter output = new StringWriter();
+		AccessWidenerWriter writer = new AccessWidenerWriter(2, output);
+		accept(writer, true);
+		writer.flush();
+
+		assertEquals(readReferenceContent("AccessWidenerWriterTest_v2.txt"), output.toString());
+	}
+
+	@Test
+	void testStreamToOutputStream() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		AccessWidenerWriter writer = new AccessWidenerWriter(1, output);
+		accept(writer, false);
+		writer.flush();
+
+		assertEquals(readReferenceContent("AccessWidenerWriterTest_v1.txt"), output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testStreamToChannel() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		AccessWidenerWriter writer = new AccessWidenerWriter(2, Channels.newChannel(output));
+		accept(writer, true);
+		writer.flush();
+
+		assertEquals(readReferenceContent("AccessWidenerWriterTest_v2.txt"), output.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testStreamingKeepsChecks() {
+		AccessWidenerWriter writer = new AccessWidenerWriter(1, new StringWriter());
+		IllegalStateException e = assertThrows(IllegalStateException.class, writer::flush);
+		assertThat(e).hasMessageContaining("No namespace set");
+
+		writer.visitHeader("ns1");
+		assertThrows(IllegalArgumentException.class, () -> writer.visitHeader("ns2"));
+		e = assertThrows(IllegalStateException.class, () -> writer.visitClass("name", AccessWidenerReader.AccessType.EXTENDABLE, true));
+		assertThat(e).hasMessageContaining("Cannot write transitive rule in version 1");
+		assertThrows(IllegalStateException.class, writer::writeString);
+	}
+
 	private String readReferenceContent(String name) throws IOException, URISyntaxException {
 		URL resource = Objects.requireNonNull(getClass().getResource(name));
 		String expectedContent = new String(Files.readAllBytes(
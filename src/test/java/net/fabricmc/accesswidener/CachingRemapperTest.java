@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+class CachingRemapperTest {
+	int delegateCalls;
+	CachingRemapper remapper;
+
+	@BeforeEach
+	void setUp() {
+		Map<String, String> mappings = new HashMap<>();
+		mappings.put("a/Class", "newa/NewClass");
+		mappings.put("a/Class.someMethod()La/Class;", "otherMethod");
+		mappings.put("a/Class.someField", "otherField");
+		remapper = new CachingRemapper(new SimpleRemapper(mappings) {
+			@Override
+			public String map(String key) {
+				delegateCalls++;
+				return super.map(key);
+			}
+		});
+	}
+
+	@Test
+	void testRemapsLikeDelegate() {
+		assertEquals("newa/NewClass", remapper.map("a/Class"));
+		assertEquals("(Lnewa/NewClass;)I", remapper.mapMethodDesc("(La/Class;)I"));
+		assertEquals("[Lnewa/NewClass;", remapper.mapDesc("[La/Class;"));
+		assertEquals("otherMethod", remapper.mapMethodName("a/Class", "someMethod", "()La/Class;"));
+		assertEquals("otherField", remapper.mapFieldName("a/Class", "someField", "I"));
+		assertEquals("unmapped", remapper.mapFieldName("a/Class", "unmapped", "I"));
+	}
+
+	@Test
+	void testAsksDelegateOncePerName() {
+		for (int i = 0; i < 3; i++) {
+			remapper.map("a/Class");
+			remapper.mapDesc("La/Class;");
+			remapper.mapMethodName("a/Class", "someMethod", "()La/Class;");
+		}
+
+		assertEquals(3, delegateCalls);
+		assertEquals(6, remapper.getHitCount());
+		assertEquals(3, remapper.getMissCount());
+		assertEquals(6 / 9.0, remapper.getHitRate());
+	}
+
+	@Test
+	void testCachesUnmappedClasses() {
+		assertNull(remapper.map("b/Unmapped"));
+		assertNull(remapper.map("b/Unmapped"));
+		assertEquals(1, delegateCalls);
+		assertEquals(1, remapper.getHitCount());
+	}
+}
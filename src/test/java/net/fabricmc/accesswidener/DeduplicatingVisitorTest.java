@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class DeduplicatingVisitorTest {
+	@Test
+	void testDropsRedundantEntries() {
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		DeduplicatingVisitor visitor = new DeduplicatingVisitor(writer);
+		visitor.visitHeader("ns");
+		visitor.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+		// Already granted transitively
+		visitor.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		// Same name, different descriptor
+		visitor.visitMethod("a/Class", "method", "(I)V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitField("a/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		// Adds transitivity
+		visitor.visitField("a/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, true);
+		visitor.visitField("a/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, true);
+		visitor.visitField("a/Class", "field", "I", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitHeader("ns");
+
+		assertEquals("accessWidener\tv2\tns\n"
+				+ "accessible\tclass\ta/Class\n"
+				+ "transitive-accessible\tmethod\ta/Class\tmethod\t()V\n"
+				+ "accessible\tmethod\ta/Class\tmethod\t(I)V\n"
+				+ "mutable\tfield\ta/Class\tfield\tI\n"
+				+ "transitive-mutable\tfield\ta/Class\tfield\tI\n"
+				+ "accessible\tfield\ta/Class\tfield\tI\n", writer.writeString());
+	}
+
+	@Test
+	void testResultingAccessWidenerIsUnchanged() {
+		AccessWidener expected = new AccessWidener();
+		AccessWidener deduplicated = new AccessWidener();
+		RecordingVisitor recording = new RecordingVisitor();
+		recording.visitHeader("ns");
+
+		for (int i = 0; i < 100; i++) {
+			AccessWidenerReader.AccessType access = i % 3 == 0 ? AccessWidenerReader.AccessType.ACCESSIBLE : AccessWidenerReader.AccessType.EXTENDABLE;
+			recording.visitClass("a/Class" + i % 7, access, i % 2 == 0);
+			recording.visitMethod("a/Class" + i % 5, "method", "()V", access, i % 4 == 0);
+		}
+
+		recording.accept(expected);
+		new AccessWidenerReader(new DeduplicatingVisitor(deduplicated), 16).read(write(recording));
+
+		assertEquals(expected.getClassFingerprints(), deduplicated.getClassFingerprints());
+		assertEquals(expected.getTargets(), deduplicated.getTargets());
+	}
+
+	private static byte[] write(RecordingVisitor recording) {
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		recording.accept(writer);
+		return writer.write();
+	}
+}
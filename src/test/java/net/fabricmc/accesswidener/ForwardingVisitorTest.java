@@ -58,4 +58,36 @@ class ForwardingVisitorTest {
 				+ "transitive-accessible\tfield\tfield-name\tfield-name\tfield-desc\n", writer1.writeString());
 		assertEquals(writer1.writeString(), writer2.writeString());
 	}
+
+	@Test
+	void visitBatchCallsOverriddenMethods() {
+		ForwardingVisitor filter = new ForwardingVisitor(writer1) {
+			@Override
+			public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				// Drops all methods
+			}
+		};
+		EntryBatch batch = new EntryBatch();
+		batch.addClass("class-name", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		batch.addMethod("class-name", "method-name", "method-desc", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		filter.visitHeader("special-namespace");
+		filter.visitBatch(batch);
+		assertEquals("accessWidener\tv2\tspecial-namespace\n"
+				+ "accessible\tclass\tclass-name\n", writer1.writeString());
+	}
+
+	@Test
+	void visitBatch() {
+		EntryBatch batch = new EntryBatch();
+		batch.addClass("class-name", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		batch.addMethod("class-name", "method-name", "method-desc", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		visitor.visitHeader("special-namespace");
+		visitor.visitBatch(batch);
+		assertEquals("accessWidener\tv2\tspecial-namespace\n"
+				+ "accessible\tclass\tclass-name\n"
+				+ "accessible\tmethod\tclass-name\tmethod-name\tmethod-desc\n", writer1.writeString());
+		assertEquals(writer1.writeString(), writer2.writeString());
+	}
 }
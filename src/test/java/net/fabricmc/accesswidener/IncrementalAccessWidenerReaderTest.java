@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class IncrementalAccessWidenerReaderTest {
+	IncrementalAccessWidenerReader reader = new IncrementalAccessWidenerReader("named");
+
+	@Test
+	void testReportsOnlyChangedClasses() {
+		assertThat(reader.read("a", widener(
+				"accessible\tclass\ta/A",
+				"mutable\tfield\tb/B\tfield\tI",
+				"extendable\tclass\tc/C$Inner"
+		))).containsExactlyInAnyOrder("a/A", "b/B", "c/C$Inner", "c/C");
+
+		assertThat(reader.read("a", widener(
+				"accessible\tclass\ta/A",
+				"accessible\tfield\tb/B\tfield\tI",
+				"extendable\tclass\tc/C$Inner"
+		))).containsExactly("b/B");
+
+		assertThat(reader.read("a", widener(
+				"accessible\tclass\ta/A",
+				"accessible\tfield\tb/B\tfield\tI",
+				"extendable\tclass\tc/C$Inner",
+				"# a comment"
+		))).isEmpty();
+	}
+
+	@Test
+	void testRemovalRecomputesMergedAccess() {
+		reader.read("a", widener("extendable\tmethod\ta/A\tm\t()V"));
+		reader.read("b", widener("accessible\tclass\ta/A", "accessible\tmethod\ta/A\tm\t()V"));
+		AccessWidener accessWidener = reader.getAccessWidener();
+		EntryTriple method = new EntryTriple("a/A", "m", "()V");
+
+		assertEquals(AccessWidener.ClassAccess.ACCESSIBLE_EXTENDABLE, accessWidener.getClassAccess("a/A"));
+
+		// The class stays extendable because of the remaining method entry
+		assertThat(reader.remove("b")).containsExactly("a/A");
+		assertEquals(AccessWidener.ClassAccess.EXTENDABLE, accessWidener.getClassAccess("a/A"));
+		assertEquals(AccessWidener.MethodAccess.EXTENDABLE, accessWidener.getMethodAccess(method));
+
+		assertThat(reader.remove("a")).containsExactly("a/A");
+		assertEquals(AccessWidener.ClassAccess.DEFAULT, accessWidener.getClassAccess("a/A"));
+		assertEquals(AccessWidener.MethodAccess.DEFAULT, accessWidener.getMethodAccess(method));
+		assertThat(accessWidener.getTargets()).isEmpty();
+		assertEquals(0, accessWidener.getFingerprint());
+	}
+
+	@Test
+	void testMatchesFreshRead() {
+		reader.read("a", widener(
+				"accessible\tclass\ta/A$B$C",
+				"mutable\tfield\td/D\tfield\tI",
+				"accessible\tmethod\te/E\tm\t()V"
+		));
+		reader.read("b", widener("extendable\tclass\ta/A$B", "extendable\tmethod\te/E\tm\t()V"));
+		reader.read("a", widener(
+				"accessible\tclass\ta/A$B$C",
+				"accessible\tfield\td/D\tfield\tI",
+				"accessible\tfield\td/D\tfield\tI"
+		));
+		reader.read("b", "accessWidener\tv1\tnamed\nextendable\tclass\ta/A$B\n".getBytes(StandardCharsets.UTF_8));
+
+		AccessWidener expected = new AccessWidener();
+		AccessWidenerReader fresh = new AccessWidenerReader(expected);
+		fresh.read(widener(
+				"accessible\tclass\ta/A$B$C",
+				"accessible\tfield\td/D\tfield\tI",
+				"accessible\tfield\td/D\tfield\tI"
+		));
+		fresh.read("accessWidener\tv1\tnamed\nextendable\tclass\ta/A$B\n".getBytes(StandardCharsets.UTF_8));
+
+		AccessWidener actual = reader.getAccessWidener();
+		assertThat(actual.getTargets()).containsExactlyInAnyOrderElementsOf(expected.getTargets());
+		assertEquals(expected.getFingerprint(), actual.getFingerprint());
+		assertThat(actual.getClassFingerprints()).isEqualTo(expected.getClassFingerprints());
+	}
+
+	@Test
+	void testFormatErrorLeavesStateUnchanged() {
+		reader.read("a", widener("accessible\tclass\ta/A"));
+		long fingerprint = reader.getAccessWidener().getFingerprint();
+
+		assertThrows(AccessWidenerFormatException.class, () -> reader.read("a", widener("accessible\tclass\tb/B", "mutable\tclass\ta/A")));
+		assertThat(reader.getAccessWidener().getTargets()).containsExactly("a.A");
+		assertEquals(fingerprint, reader.getAccessWidener().getFingerprint());
+
+		// The previous version of the file is still the one that is diffed against
+		assertThat(reader.read("a", widener("accessible\tclass\tb/B"))).containsExactlyInAnyOrder("a/A", "b/B");
+		assertThat(reader.getAccessWidener().getTargets()).containsExactly("b.B");
+	}
+
+	private static byte[] widener(String... lines) {
+		return ("accessWidener\tv2\tnamed\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+}
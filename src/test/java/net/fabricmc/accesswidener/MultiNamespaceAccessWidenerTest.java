@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+class MultiNamespaceAccessWidenerTest {
+	@Test
+	void testLooksUpRulesInEveryNamespace() {
+		MultiNamespaceAccessWidener multi = new MultiNamespaceAccessWidener(read(
+				"accessible\tclass\tnamed/Class",
+				"mutable\tfield\tnamed/Class\tfield\tLnamed/Class;",
+				"extendable\tmethod\tshared/Class\tmethod\t()V"
+		)).addNamespace("intermediary", new SimpleRemapper(Map.of(
+				"named/Class", "intermediary/class_1",
+				"named/Class.field", "field_1"
+		)));
+
+		assertThat(multi.getNamespaces()).containsExactly("named", "intermediary");
+		assertThat(multi.getTargets("intermediary")).containsExactlyInAnyOrder("intermediary.class_1", "shared.Class");
+		assertThat(multi.isTarget("intermediary", "intermediary/class_1")).isTrue();
+		assertThat(multi.isTarget("intermediary", "named/Class")).isFalse();
+		assertThat(multi.isTarget("named", "named/Class")).isTrue();
+
+		assertThat(multi.getClassAccess("intermediary", "intermediary/class_1")).containsExactly(AccessWidenerReader.AccessType.ACCESSIBLE);
+		assertThat(multi.getClassAccess("intermediary", "shared/Class")).containsExactly(AccessWidenerReader.AccessType.EXTENDABLE);
+		assertThat(multi.getClassAccess("intermediary", "named/Class")).isEmpty();
+		assertThat(multi.getFieldAccess("intermediary", new EntryTriple("intermediary/class_1", "field_1", "Lintermediary/class_1;")))
+				.containsExactly(AccessWidenerReader.AccessType.MUTABLE);
+		assertThat(multi.getFieldAccess("named", new EntryTriple("named/Class", "field", "Lnamed/Class;")))
+				.containsExactly(AccessWidenerReader.AccessType.MUTABLE);
+		assertThat(multi.getMethodAccess("intermediary", new EntryTriple("shared/Class", "method", "()V")))
+				.containsExactly(AccessWidenerReader.AccessType.EXTENDABLE);
+	}
+
+	@Test
+	void testSharesUnchangedEntries() {
+		AccessWidener named = read("extendable\tmethod\tshared/Class\tmethod\t()V", "accessible\tfield\tnamed/Class\tfield\tI");
+		MultiNamespaceAccessWidener multi = new MultiNamespaceAccessWidener(named)
+				.addNamespace("intermediary", new SimpleRemapper(Map.of("named/Class", "intermediary/class_1")));
+		AccessWidener source = multi.get("named");
+		AccessWidener intermediary = multi.get("intermediary");
+
+		// Rules that are equal in both namespaces are only stored once
+		assertSame(source.methodAccess, intermediary.methodAccess);
+		assertThat(intermediary.fieldAccess).isNotSameAs(source.fieldAccess);
+		assertThat(intermediary.classAccess).isNotSameAs(source.classAccess);
+
+		// Entries whose names don't change are shared as well
+		EntryTriple method = named.methodAccess.keySet().iterator().next();
+		assertSame(method, intermediary.methodAccess.keySet().iterator().next());
+		assertEquals(named.getFingerprint(), source.getFingerprint());
+	}
+
+	@Test
+	void testMatchesRemap() {
+		AccessWidener named = read(
+				"accessible\tclass\tnamed/Class$Inner",
+				"accessible\tmethod\tnamed/Class\tmethod\t(Lnamed/Class;)V",
+				"accessible\tfield\tnamed/Class\tfield\tI"
+		);
+		SimpleRemapper remapper = new SimpleRemapper(Map.of("named/Class", "intermediary/class_1", "named/Class$Inner", "intermediary/class_1$class_2"));
+		AccessWidener expected = named.remap(remapper, "intermediary");
+		AccessWidener actual = new MultiNamespaceAccessWidener(named).addNamespace("intermediary", remapper).get("intermediary");
+
+		assertEquals(expected.classAccess, actual.classAccess);
+		assertEquals(expected.methodAccess, actual.methodAccess);
+		assertEquals(expected.fieldAccess, actual.fieldAccess);
+		assertEquals(expected.getTargets(), actual.getTargets());
+		assertEquals(expected.getClassFingerprints(), actual.getClassFingerprints());
+		assertEquals(expected.getFingerprint(), actual.getFingerprint());
+	}
+
+	@Test
+	void testMergesCollidingEntries() {
+		MultiNamespaceAccessWidener multi = new MultiNamespaceAccessWidener(read(
+				"accessible\tmethod\tnamed/Class\ta\t()V",
+				"extendable\tmethod\tnamed/Class\tb\t()V"
+		)).addNamespace("official", new SimpleRemapper(Map.of("named/Class.a()V", "c", "named/Class.b()V", "c")));
+
+		assertThat(multi.getMethodAccess("official", new EntryTriple("named/Class", "c", "()V")))
+				.containsExactlyInAnyOrder(AccessWidenerReader.AccessType.ACCESSIBLE, AccessWidenerReader.AccessType.EXTENDABLE);
+		// The namespace that was added before keeps the separate entries
+		assertThat(multi.getMethodAccess("named", new EntryTriple("named/Class", "a", "()V")))
+				.containsExactly(AccessWidenerReader.AccessType.ACCESSIBLE);
+	}
+
+	@Test
+	void testViewsAreReadOnlySnapshots() {
+		AccessWidener named = read("accessible\tclass\tnamed/Class");
+		MultiNamespaceAccessWidener multi = new MultiNamespaceAccessWidener(named)
+				.addNamespace("intermediary", new SimpleRemapper(Map.of("named/Class", "intermediary/class_1")));
+		long fingerprint = multi.get("intermediary").getFingerprint();
+
+		// Changing the source afterwards doesn't affect any namespace
+		named.visitClass("named/Class", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		named.visitClass("named/Other", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		assertThat(multi.getClassAccess("named", "named/Class")).containsExactly(AccessWidenerReader.AccessType.ACCESSIBLE);
+		assertThat(multi.isTarget("named", "named/Other")).isFalse();
+		assertEquals(fingerprint, multi.get("intermediary").getFingerprint());
+
+		AccessWidener view = multi.get("intermediary");
+		assertThrows(UnsupportedOperationException.class, () -> view.visitClass("intermediary/class_1", AccessWidenerReader.AccessType.EXTENDABLE, false));
+		assertThrows(UnsupportedOperationException.class, () -> view.visitClass("intermediary/class_2", AccessWidenerReader.AccessType.ACCESSIBLE, false));
+		assertThrows(UnsupportedOperationException.class, () -> view.getTargets().clear());
+		assertThat(multi.getClassAccess("intermediary", "intermediary/class_1")).containsExactly(AccessWidenerReader.AccessType.ACCESSIBLE);
+	}
+
+	@Test
+	void testRejectsUnknownNamespace() {
+		MultiNamespaceAccessWidener multi = new MultiNamespaceAccessWidener(read("accessible\tclass\tnamed/Class"));
+
+		assertThrows(IllegalArgumentException.class, () -> multi.get("official"));
+		assertThrows(IllegalArgumentException.class, () -> multi.addNamespace("named", new SimpleRemapper(Map.of())));
+	}
+
+	private static AccessWidener read(String... lines) {
+		AccessWidener accessWidener = new AccessWidener();
+		new AccessWidenerReader(accessWidener).read(("accessWidener\tv2\tnamed\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+		return accessWidener;
+	}
+}
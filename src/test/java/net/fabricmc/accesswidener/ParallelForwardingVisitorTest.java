@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelForwardingVisitorTest {
+	ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testForwardsEventsInOrderToAllVisitors() {
+		AccessWidenerWriter expected = new AccessWidenerWriter();
+		accept(expected, 500);
+
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		AccessWidener accessWidener = new AccessWidener();
+
+		try (ParallelForwardingVisitor visitor = new ParallelForwardingVisitor(executor, 4, writer, accessWidener)) {
+			accept(visitor, 500);
+		}
+
+		assertEquals(expected.writeString(), writer.writeString());
+		assertEquals("ns", accessWidener.getNamespace());
+		assertEquals(AccessWidener.MethodAccess.ACCESSIBLE, accessWidener.getMethodAccess(new EntryTriple("a/Class", "method499", "()V")));
+	}
+
+	@Test
+	void testPropagatesFirstFailure() {
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		ParallelForwardingVisitor visitor = new ParallelForwardingVisitor(executor, 1, writer, new AccessWidenerVisitor() {
+			@Override
+			public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				throw new IllegalStateException("broken");
+			}
+		});
+
+		// Either a later visit or closing rethrows the failure, but visiting never blocks on the failed visitor
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+			accept(visitor, 500);
+			visitor.close();
+		});
+		assertThat(e).hasMessage("broken");
+	}
+
+	@Test
+	void testDoesNotBlockOnInterruptedWorker() {
+		ParallelForwardingVisitor visitor = new ParallelForwardingVisitor(executor, 1, new AccessWidenerVisitor() {
+			@Override
+			public void visitHeader(String namespace) {
+				try {
+					// Gives the producer time to fill the queue and block on it
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+
+				// The worker exits on its next take, leaving its queue full
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		RuntimeException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(RuntimeException.class, () -> {
+			accept(visitor, 500);
+			visitor.close();
+		}));
+		assertThat(e).hasCauseInstanceOf(InterruptedException.class);
+	}
+
+	@Test
+	void testStopsWorkersAfterFailingVisit() throws InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(2);
+		ParallelForwardingVisitor visitor = new ParallelForwardingVisitor(workers, 1, new AccessWidenerWriter(), new AccessWidenerVisitor() {
+			@Override
+			public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				throw new IllegalStateException("broken");
+			}
+		});
+
+		// Visit until the failure is rethrown, like a reader propagating it, without closing the visitor
+		assertThrows(IllegalStateException.class, () -> {
+			while (true) {
+				accept(visitor, 1);
+			}
+		});
+
+		workers.shutdown();
+		assertThat(workers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		// Closing afterwards still reports the failure
+		assertThrows(IllegalStateException.class, visitor::close);
+		assertThrows(IllegalStateException.class, visitor::close);
+	}
+
+	private static void accept(AccessWidenerVisitor visitor, int count) {
+		visitor.visitHeader("ns");
+		visitor.visitClass("a/Class", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+
+		for (int i = 0; i < count; i++) {
+			visitor.visitMethod("a/Class", "method" + i, "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.accesswidener;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+class RecordingVisitorTest {
+	@Test
+	void testReplaysEventsInOrder() {
+		RecordingVisitor recording = new RecordingVisitor();
+		AccessWidenerWriter expected = new AccessWidenerWriter();
+		accept(new ForwardingVisitor(recording, expected));
+
+		AccessWidenerWriter first = new AccessWidenerWriter();
+		recording.accept(first);
+		AccessWidenerWriter second = new AccessWidenerWriter();
+		recording.accept(second);
+
+		assertEquals(6, recording.size());
+		assertEquals(expected.writeString(), first.writeString());
+		assertEquals(expected.writeString(), second.writeString());
+	}
+
+	@Test
+	void testGrowsBeyondInitialCapacity() {
+		RecordingVisitor recording = new RecordingVisitor();
+		recording.visitHeader("ns");
+
+		for (int i = 0; i < 1000; i++) {
+			recording.visitField("a/Class", "field" + i, "I", AccessWidenerReader.AccessType.MUTABLE, i % 2 == 0);
+		}
+
+		AccessWidener accessWidener = new AccessWidener();
+		recording.accept(accessWidener);
+
+		assertEquals(1001, recording.size());
+		assertEquals(AccessWidener.FieldAccess.MUTABLE, accessWidener.getFieldAccess(new EntryTriple("a/Class", "field999", "I")));
+	}
+
+	@Test
+	void testReplaysToSeveralVisitorsInParallel() {
+		RecordingVisitor recording = new RecordingVisitor();
+		accept(recording);
+		AccessWidenerWriter writer = new AccessWidenerWriter();
+		AccessWidener accessWidener = new AccessWidener();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			recording.acceptAsync(executor, writer, new TransitiveOnlyFilter(accessWidener)).join();
+		} finally {
+			executor.shutdown();
+		}
+
+		AccessWidenerWriter expected = new AccessWidenerWriter();
+		accept(expected);
+		assertEquals(expected.writeString(), writer.writeString());
+		assertThat(accessWidener.getTargets()).containsExactly("a.Class");
+		assertEquals(AccessWidener.MethodAccess.DEFAULT, accessWidener.getMethodAccess(new EntryTriple("a/Class", "method", "()V")));
+	}
+
+	@Test
+	void testParallelReplayPropagatesFailure() {
+		RecordingVisitor recording = new RecordingVisitor();
+		accept(recording);
+
+		CompletionException e = assertThrows(CompletionException.class, () -> recording.acceptAsync(Runnable::run, new AccessWidenerVisitor() {
+			@Override
+			public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+				throw new IllegalStateException("broken");
+			}
+		}).join());
+		assertThat(e).hasRootCauseMessage("broken");
+	}
+
+	private static void accept(AccessWidenerVisitor visitor) {
+		visitor.visitHeader("ns");
+		visitor.visitClass("a/Class", AccessWidenerReader.AccessType.EXTENDABLE, false);
+		visitor.visitMethod("a/Class", "method", "()V", AccessWidenerReader.AccessType.ACCESSIBLE, false);
+		visitor.visitField("a/Class", "field", "I", AccessWidenerReader.AccessType.ACCESSIBLE, true);
+		visitor.visitField("a/Class", "field", "I", AccessWidenerReader.AccessType.MUTABLE, false);
+		visitor.visitHeader("ns");
+	}
+}